@@ -0,0 +1,17 @@
+package fussball;
+
+/**
+ * Something that can play one side of the table. Each AI is made for one side
+ * (the human's or the computer's), and the game asks it to move that side's
+ * spindles whenever it is the AI's turn. The AI is handed the state every time
+ * instead of holding on to one, so the same AI can just as well play in a
+ * copy of the game (for instance, in the rollouts of a MonteCarloAI).
+ * @author Max Strange
+ */
+public interface AI {
+    /**
+     * Decides on and does the moves for this AI's side of the table.
+     * @param state The state to update according to what the AI ends up doing.
+     */
+    void doMoves(GameState state);
+}
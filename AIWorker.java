@@ -0,0 +1,216 @@
+package fussball;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs an AI on a thread of its own, so that however long the AI takes to
+ * decide, the ticks never wait for it. When it is the AI's turn, the state
+ * is copied into a view that only the worker thread uses, and the AI makes
+ * its moves in the view while the game carries on. What each spindle did in
+ * the view (see SpindleAction.observe()) is then done to the real spindles
+ * at the start of the first tick after the AI is finished.
+ *
+ * The AI has a deadline of a few ticks to decide in. If it hasn't decided
+ * by then, the spindles do whatever they did last time instead, and the
+ * late decision is thrown away when it comes in. No new decision is asked
+ * for until the late one is in, so a slow AI just skips turns.
+ *
+ * Only call a worker from the thread that ticks the game.
+ * @author Max Strange
+ */
+public class AIWorker {
+    private final boolean human;//Whether the AI plays the human's side (otherwise the computer's)
+    private final int deadlineTicks;//How many ticks the AI has to decide in
+    private final ExecutorService thread;
+    private final Decision decision;//Makes the AI's decisions on the worker thread
+    private byte[] lastActions = null;//What each spindle did last time, repeated if the deadline is missed (made once the spindles exist)
+    private Future<Void> pending = null;//The decision being made, if there is one
+    private int requestTick;//The tick the pending decision was asked for on
+    private boolean missed;//Whether the pending decision missed its deadline
+    private int numDecisions = 0;//The number of decisions done in time
+    private int numMissed = 0;//The number of decisions that missed their deadline
+
+    /**
+     * Constructor.
+     * @param ai The AI to run.
+     * @param human If true, the AI plays the human's side of the table.
+     * Otherwise, it plays the computer's side.
+     * @param deadlineTicks How many ticks the AI has to decide in. At 1, a
+     * decision is done on the tick after it was asked for.
+     */
+    public AIWorker(AI ai, boolean human, int deadlineTicks) {
+        if (deadlineTicks < 1)
+            throw new IllegalArgumentException("The deadline must be at least one tick.");
+
+        this.human = human;
+        this.deadlineTicks = deadlineTicks;
+        this.thread = Executors.newSingleThreadExecutor(new DaemonThreadFactory(human ? "Human AI" : "Computer AI"));
+        this.decision = new Decision(ai, human);
+    }
+
+
+
+    /**
+     * Does whatever the AI decided if it has finished, and asks for a new
+     * decision if it is the AI's turn. Call this at the start of every tick.
+     * @param state The state of the game.
+     * @param numTicks The number of ticks so far.
+     * @param turn Whether it is the AI's turn to make a decision.
+     */
+    public void update(GameState state, int numTicks, boolean turn) {
+        if (this.pending != null) {
+            if (this.pending.isDone()) {
+                finish();
+                if (!this.missed) {
+                    System.arraycopy(this.decision.getActions(), 0, this.lastActions, 0, this.lastActions.length);
+                    apply(state);
+                    this.numDecisions++;
+                }
+                this.pending = null;
+            } else if (!this.missed && ((numTicks - this.requestTick) >= this.deadlineTicks)) {
+                //Out of time - do the same as last time and ignore the decision when it comes in
+                this.missed = true;
+                this.numMissed++;
+                apply(state);
+            }
+        }
+
+        if (turn && (this.pending == null)) {
+            if (this.lastActions == null) {
+                Spindle[] spindles = this.human ? state.getHumanSpindles() : state.getComputerSpindles();
+                this.lastActions = new byte[spindles.length];
+                Arrays.fill(this.lastActions, (byte)SpindleAction.NOTHING);
+            }
+
+            this.decision.prepare(state);
+            this.requestTick = numTicks;
+            this.missed = false;
+            this.pending = this.thread.submit(this.decision);
+        }
+    }
+
+    /**
+     * Stops the worker thread. The worker can't be used after this.
+     */
+    public void shutdown() {
+        this.thread.shutdownNow();
+    }
+
+    /**
+     * Gets the number of decisions that were done in time.
+     * @return The number of decisions.
+     */
+    public int getNumDecisions() { return this.numDecisions; }
+    /**
+     * Gets the number of decisions that missed their deadline (and so had
+     * the previous one done again instead).
+     * @return The number of missed deadlines.
+     */
+    public int getNumMissedDeadlines() { return this.numMissed; }
+    public int getDeadlineTicks() { return this.deadlineTicks; }
+
+
+
+    /**
+     * Has each of the AI's spindles do the last decision's action again.
+     * @param state The state of the game.
+     */
+    private void apply(GameState state) {
+        Spindle[] spindles = this.human ? state.getHumanSpindles() : state.getComputerSpindles();
+        for (int i = 0; i < this.lastActions.length; i++) {
+            SpindleAction.apply(spindles[i], this.lastActions[i], this.human);
+        }
+    }
+
+    /**
+     * Waits for the (finished) pending decision, so that anything the AI
+     * threw is passed on.
+     */
+    private void finish() {
+        try {
+            this.pending.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The AI failed to make a decision.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Makes one decision at a time: has the AI make its moves in the view,
+     * then works out what each spindle did.
+     */
+    private static class Decision implements Callable<Void> {
+        private final AI ai;
+        private final boolean human;
+        private GameState view = null;//The worker's copy of the game (made once the size of the table is known)
+        private int[] topY;//Where each spindle was before the AI moved
+        private Orientation[] orientation;//Which way each spindle faced before the AI moved
+        private byte[] actions;//What each spindle did
+
+        public Decision(AI ai, boolean human) {
+            this.ai = ai;
+            this.human = human;
+        }
+
+        /**
+         * Copies the game into the view. Only call this while no decision is
+         * being made.
+         * @param state The state of the game.
+         */
+        public void prepare(GameState state) {
+            if (this.view == null) {
+                this.view = new GameState(state.getSeed());
+                this.view.initialize(state.getPanelWidth(), state.getPanelHeight());
+                int numSpindles = this.human ? state.getHumanSpindles().length : state.getComputerSpindles().length;
+                this.topY = new int[numSpindles];
+                this.orientation = new Orientation[numSpindles];
+                this.actions = new byte[numSpindles];
+            }
+            this.view.copyFrom(state);
+        }
+
+        @Override
+        public Void call() {
+            Spindle[] spindles = this.human ? this.view.getHumanSpindles() : this.view.getComputerSpindles();
+            for (int i = 0; i < spindles.length; i++) {
+                this.topY[i] = spindles[i].getTopY();
+                this.orientation[i] = spindles[i].getPlayers()[0].getOrientation();
+            }
+
+            this.ai.doMoves(this.view);
+
+            for (int i = 0; i < spindles.length; i++) {
+                this.actions[i] = (byte)SpindleAction.observe(spindles[i], this.topY[i], this.orientation[i], this.human);
+            }
+            return null;
+        }
+
+        public byte[] getActions() { return this.actions; }
+    }
+
+    /**
+     * Makes the worker's daemon thread, so that it doesn't keep the game
+     * running after its window has closed.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+
+        public DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, this.name);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
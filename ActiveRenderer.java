@@ -0,0 +1,165 @@
+package fussball;
+
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Draws the game on its own thread, straight into a BufferStrategy, at a
+ * steady frame rate. Swing's repaint() calls can be put off or merged
+ * together by the repaint manager whenever it likes, so with them the time
+ * between frames is unpredictable. This thread never goes through the
+ * repaint manager: it draws a frame and flips it onto the screen itself, then
+ * waits for the next frame to be due.
+ *
+ * While it runs it keeps track of the frame rate it actually achieves and of
+ * the jitter (the standard deviation of the time between frames), and draws
+ * both in the corner of the screen.
+ * @author Max Strange
+ */
+public class ActiveRenderer extends Thread {
+    private final int NUM_BUFFERS = 2;
+    private final long REPORT_NANOS = 1000000000L;//How often the frame rate and jitter are worked out
+
+    private final Canvas canvas;
+    private final AppPanel panel;
+    private final long frameNanos;//The time between frames that we are aiming for
+    private volatile boolean running = true;
+
+    private long lastFrameTime = 0;//The System.nanoTime() the last frame was shown at
+    private long reportStart = 0;//The System.nanoTime() the current report started at
+    private int reportFrames = 0;//The number of times between frames in the current report
+    private double reportSum = 0.0;//The sum of the times between frames in the current report (ms)
+    private double reportSumOfSquares = 0.0;//The sum of the squares of the times between frames (ms)
+    private volatile double framesPerSecond = 0.0;//The frame rate over the last report
+    private volatile double jitterMillis = 0.0;//The jitter over the last report
+    private String statsText = "";//The last report, ready to draw
+
+    /**
+     * Constructor. The canvas must already be showing on the screen.
+     * @param canvas The canvas to draw on.
+     * @param panel The panel that knows how to draw the game.
+     * @param targetFramesPerSecond The frame rate to aim for.
+     */
+    public ActiveRenderer(Canvas canvas, AppPanel panel, int targetFramesPerSecond) {
+        super("Render");
+        setDaemon(true);
+
+        if (targetFramesPerSecond < 1)
+            throw new IllegalArgumentException("The frame rate must be at least one frame a second.");
+
+        this.canvas = canvas;
+        this.panel = panel;
+        this.frameNanos = 1000000000L / targetFramesPerSecond;
+    }
+
+
+
+    @Override
+    public void run() {
+        this.canvas.createBufferStrategy(NUM_BUFFERS);
+        BufferStrategy strategy = this.canvas.getBufferStrategy();
+
+        long nextFrame = System.nanoTime();
+        this.reportStart = nextFrame;
+
+        while (this.running) {
+            long now = System.nanoTime();
+            if (now < nextFrame) {
+                LockSupport.parkNanos(nextFrame - now);//Not time yet
+                continue;
+            }
+
+            drawFrame(strategy);
+            recordFrame(System.nanoTime());
+
+            nextFrame += this.frameNanos;
+            if (nextFrame < now)
+                nextFrame = now;//Don't try to catch up on frames we missed - just draw the next one
+        }
+
+        strategy.dispose();
+    }
+
+    /**
+     * Stops drawing and waits for the frame being drawn (if any) to finish, so
+     * that the canvas can safely be thrown away afterwards.
+     */
+    public void stopRendering() {
+        this.running = false;
+        LockSupport.unpark(this);
+
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the frame rate achieved over the last second.
+     * @return The number of frames shown in the last second.
+     */
+    public double getFramesPerSecond() { return this.framesPerSecond; }
+    /**
+     * Gets the jitter over the last second.
+     * @return The standard deviation of the time between frames, in milliseconds.
+     */
+    public double getJitterMillis() { return this.jitterMillis; }
+
+
+
+    /**
+     * Draws one frame and shows it, redrawing it if the buffers were lost
+     * along the way.
+     * @param strategy The buffers to draw into.
+     */
+    private void drawFrame(BufferStrategy strategy) {
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    this.panel.render(g);
+                    g.drawString(this.statsText, 10, 20);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+
+            strategy.show();
+        } while (strategy.contentsLost());
+
+        Toolkit.getDefaultToolkit().sync();//Make sure the frame actually gets to the screen now
+    }
+
+    /**
+     * Adds a frame to the frame rate and jitter figures.
+     * @param time The System.nanoTime() the frame was shown at.
+     */
+    private void recordFrame(long time) {
+        if (this.lastFrameTime != 0) {
+            double sinceLast = (time - this.lastFrameTime) / 1000000.0;
+            this.reportFrames++;
+            this.reportSum += sinceLast;
+            this.reportSumOfSquares += sinceLast * sinceLast;
+        }
+        this.lastFrameTime = time;
+
+        long reportLength = time - this.reportStart;
+        if ((reportLength >= REPORT_NANOS) && (this.reportFrames > 0)) {
+            double mean = this.reportSum / this.reportFrames;
+            double variance = Math.max(0.0, (this.reportSumOfSquares / this.reportFrames) - (mean * mean));
+
+            this.framesPerSecond = this.reportFrames / (reportLength / 1000000000.0);
+            this.jitterMillis = Math.sqrt(variance);
+            this.statsText = String.format("FPS: %.1f  Jitter: %.2f ms", this.framesPerSecond, this.jitterMillis);
+
+            this.reportStart = time;
+            this.reportFrames = 0;
+            this.reportSum = 0.0;
+            this.reportSumOfSquares = 0.0;
+        }
+    }
+}
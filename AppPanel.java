@@ -1,13 +1,19 @@
 package fussball;
 
 import java.awt.BasicStroke;
+import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.Timer;
 
@@ -16,12 +22,39 @@ import javax.swing.Timer;
  * @author Max Strange
  */
 public class AppPanel extends JPanel implements ActionListener {
+    private final int FRAME_DELAY_MS = 16;//The time between repaints (about 60 frames a second)
+    private final int FONT_SIZE = 30;
+    private final Font FONT = new Font("TimesRoman", Font.PLAIN, FONT_SIZE);
+    private final Font OVERLAY_FONT = new Font("TimesRoman", Font.PLAIN, 16);//For measurements shown over the game
+    private final BasicStroke SELECTION_STROKE = new BasicStroke(10);
+    
     private GameState state = null;
     private GameLogic logic = null;
-    private Timer timer = null;
-    private int numTicks = 0;//The number of ticks of the timer.
+    private Timer timer = null;//Fires repaints - the simulation runs on its own thread
+    private SimulationThread simulation = null;
+    private ActiveRenderer renderer = null;//Draws the game when active rendering is on (null if it's off)
+    private RenderFrame previousFrame = null;//The second to last simulation step (copied for painting)
+    private RenderFrame currentFrame = null;//The last simulation step (copied for painting)
+    private RenderFrame repaintedPrevious = null;//The previousFrame as of the last repaint asked for
+    private RenderFrame repaintedCurrent = null;//The currentFrame as of the last repaint asked for
     private final AppWindow parentWindow;
     
+    private BufferedImage tableLayer = null;//The background and the parts of the table that don't move, drawn once
+    private int tableLayerWidth = 0;//The width of the panel when the table layer was drawn
+    private int tableLayerHeight = 0;//The height of the panel when the table layer was drawn
+    private boolean tableLayerLeftLit = false;//Whether the left goal was lit when the table layer was drawn
+    private boolean tableLayerRightLit = false;//Whether the right goal was lit when the table layer was drawn
+    private PlayerSprites playerSprites = null;//The pictures of the players, made for the same screen as the table layer
+    
+    private volatile boolean showLatency = false;//Whether to show the input latency on the screen
+    private String latencyText = "";//The input latency as last shown
+    private int latencyTextSamples = -1;//The number of latencies measured when latencyText was made
+    
+    private int dirtyLeft;//The bounds of the area that needs repainting (empty if dirtyLeft >= dirtyRight)
+    private int dirtyTop;
+    private int dirtyRight;
+    private int dirtyBottom;
+    
     /**
      * Constructor for AppPanel objects.
      * @param parentWindow The parent AppWindow object responsible for this
@@ -34,20 +67,17 @@ public class AppPanel extends JPanel implements ActionListener {
     
     @Override
     public void actionPerformed(ActionEvent ae) {
-        this.numTicks++;
-        
-        
-        if (this.state.gameIsOver()) {//If the game is over, end the game!
+        if (this.simulation.isGameOver()) {//If the game is over, end the game! (Asks the simulation thread, which is the one changing the scores)
             
+            this.timer.stop();
+            this.simulation.stopSimulation();
+            if (this.renderer != null)
+                this.renderer.stopRendering();
             this.parentWindow.endGame();
         
-        } else {//Otherwise, keep playing
+        } else if (this.renderer == null) {//Otherwise, keep drawing - the simulation thread deals with everything else
         
-            //Have the logic deal with everything
-            this.logic.respondToTimerTick(this.numTicks);
-
-            //Repaint according to what the logic has changed in the state
-            repaint();
+            repaintChanges();
         
         }
     }
@@ -59,55 +89,288 @@ public class AppPanel extends JPanel implements ActionListener {
      */
     public void initialize(GameState state, GameLogic logic) {
         this.state = state;
-        this.state.initialize(this);
+        this.state.initialize(getWidth(), getHeight());
         this.logic = logic;
-        this.timer = new Timer(50, this);
+        this.simulation = new SimulationThread(state, logic);
+        this.previousFrame = new RenderFrame(state.getAllSpindles().length);
+        this.currentFrame = new RenderFrame(state.getAllSpindles().length);
+        this.repaintedPrevious = new RenderFrame(state.getAllSpindles().length);
+        this.repaintedCurrent = new RenderFrame(state.getAllSpindles().length);
+        this.simulation.copyFrames(this.previousFrame, this.currentFrame);
+        this.simulation.copyFrames(this.repaintedPrevious, this.repaintedCurrent);
+        this.timer = new Timer(FRAME_DELAY_MS, this);
+    }
+    
+    /**
+     * Draws the game onto the given canvas from a render thread of its own,
+     * instead of being repainted by Swing. The panel itself is then never
+     * shown - it should be the same size as the canvas. Call this after
+     * initialize() and before startTimer().
+     * @param canvas The canvas to draw on (already showing on the screen).
+     * @param framesPerSecond The frame rate to aim for.
+     */
+    public void useActiveRendering(Canvas canvas, int framesPerSecond) {
+        this.renderer = new ActiveRenderer(canvas, this, framesPerSecond);
     }
     
     /**
-     * Starts the timer that will cause the whole application to run. Only do
-     * this once, and only after everything is initialized.
+     * Starts the simulation thread and the repaint timer that will cause the
+     * whole application to run. Only do this once, and only after everything
+     * is initialized.
      */
     public void startTimer() {
+        this.simulation.start();
+        if (this.renderer != null)
+            this.renderer.start();
         this.timer.start();
     }
     
+    /**
+     * Draws the whole game, in between the last two simulation steps. This
+     * covers the whole panel. Only one thread may draw at a time.
+     * @param g The Graphics object to draw with.
+     */
+    public void render(Graphics g) {
+        this.simulation.copyFrames(this.previousFrame, this.currentFrame);
+        draw(g);
+    }
+    
     
     
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        
-        if (this.logic != null) {
-            drawTableOutline(g);
-            drawBall(g);
-            drawAllSpindles(g);
-            drawControls(g);
-            drawScores(g);
-            drawTime(g);
+        if (this.logic == null)
+            super.paintComponent(g);
+        else
+            draw(g);//Draw the frames repaintChanges() copied, so that everything that changed is inside the clip
+    }
+    
+    
+    
+    /**
+     * Draws the whole game from the last two copied simulation steps.
+     * @param g The Graphics object to draw with.
+     */
+    private void draw(Graphics g) {
+        double alpha = getAlpha();
+        
+        g.drawImage(getTableLayer(), 0, 0, null);//Covers the whole panel, so there's no need to fill the background
+        drawBall(g, alpha);
+        drawAllSpindles(g, alpha);
+        drawControls(g, alpha);
+        drawScores(g);
+        drawTime(g);
+        if (this.showLatency)
+            drawLatency(g);
+        
+        this.logic.getLatencyTracker().framePainted(this.currentFrame.getElapsedTicks(), System.nanoTime());
+    }
+    
+    /**
+     * Shows or hides the input latency at the bottom of the screen.
+     */
+    public void toggleLatencyOverlay() {
+        this.showLatency = !this.showLatency;
+        repaint();
+    }
+    
+    /**
+     * Writes the input latencies measured so far to LatencyTracker.DUMP_FILE_NAME.
+     */
+    public void dumpLatency() {
+        try {
+            this.logic.getLatencyTracker().writeToFile(LatencyTracker.DUMP_FILE_NAME);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Something has gone wrong while trying to save the input latencies...");
         }
     }
     
+    /**
+     * Copies the last two simulation steps to paint from, and asks for a
+     * repaint of just the parts of the panel that look different from the
+     * last time a repaint was asked for. Something that moved needs repainting
+     * wherever it may have been drawn - anywhere between the two steps copied
+     * last time, and anywhere between the two steps copied now.
+     */
+    private void repaintChanges() {
+        this.simulation.copyFrames(this.previousFrame, this.currentFrame);
+        this.dirtyLeft = Integer.MAX_VALUE;
+        this.dirtyTop = Integer.MAX_VALUE;
+        this.dirtyRight = Integer.MIN_VALUE;
+        this.dirtyBottom = Integer.MIN_VALUE;
+        
+        RenderFrame[] frames = {this.repaintedPrevious, this.repaintedCurrent, this.previousFrame, this.currentFrame};
+        
+        //The ball
+        if (!framesMatch(frames, -1)) {
+            int r = this.state.getBall().getRadius() + 1;
+            for (RenderFrame f : frames) {
+                if (!f.isBallOffTable())
+                    markDirty(f.getBallX() - r, f.getBallY() - r, f.getBallX() + r, f.getBallY() + r);
+            }
+        }
+        
+        //The spindles (repaint their whole column, which takes in their players and controls)
+        Spindle[] allSpindles = this.state.getAllSpindles();
+        int halfWidth = Math.max(PlayerRegistry.LEG_LENGTH, PlayerRegistry.HEAD_RADIUS + FONT_SIZE)
+                + (int)SELECTION_STROKE.getLineWidth();
+        for (int i = 0; i < allSpindles.length; i++) {
+            if (!framesMatch(frames, i))
+                markDirty(allSpindles[i].getX() - halfWidth, 0, allSpindles[i].getX() + halfWidth, getHeight());
+        }
+        
+        //The goals
+        Goal leftGoal = this.state.getLeftGoal();
+        Goal rightGoal = this.state.getRightGoal();
+        if (this.repaintedCurrent.isLeftGoalLit() != this.currentFrame.isLeftGoalLit())
+            markDirty(leftGoal.getTopLeftCornerX(), leftGoal.getTopLeftCornerY(), 
+                    leftGoal.getTopLeftCornerX() + leftGoal.getWidth() + 1, leftGoal.getBottomLeftCornerY() + 1);
+        if (this.repaintedCurrent.isRightGoalLit() != this.currentFrame.isRightGoalLit())
+            markDirty(rightGoal.getTopLeftCornerX(), rightGoal.getTopLeftCornerY(), 
+                    rightGoal.getTopLeftCornerX() + rightGoal.getWidth() + 1, rightGoal.getBottomLeftCornerY() + 1);
+        
+        //The text (the whole width of the line, since the text can get longer)
+        FontMetrics metrics = getFontMetrics(FONT);
+        if ((this.repaintedCurrent.getHumanScore() != this.currentFrame.getHumanScore())
+                || (this.repaintedCurrent.getComputerScore() != this.currentFrame.getComputerScore())) {
+            int y = this.state.getTopWall().getY() / 2;
+            markDirty(0, y - metrics.getAscent(), getWidth(), y + metrics.getDescent());
+        }
+        if (this.repaintedCurrent.getElapsedTime() != this.currentFrame.getElapsedTime()) {
+            int y = this.getHeight() / 10;
+            markDirty(this.getWidth() / 2, y - metrics.getAscent(), getWidth(), y + metrics.getDescent());
+        }
+        
+        if (this.showLatency) {//The latency could change with any frame, so always repaint it
+            FontMetrics overlayMetrics = getFontMetrics(OVERLAY_FONT);
+            int y = getLatencyY(overlayMetrics);
+            markDirty(0, y - overlayMetrics.getAscent(), getWidth(), y + overlayMetrics.getDescent());
+        }
+        
+        if (this.dirtyLeft < this.dirtyRight)
+            repaint(this.dirtyLeft, this.dirtyTop, this.dirtyRight - this.dirtyLeft, this.dirtyBottom - this.dirtyTop);
+        
+        this.repaintedPrevious.copyFrom(this.previousFrame);
+        this.repaintedCurrent.copyFrom(this.currentFrame);
+    }
+    
+    /**
+     * Checks whether the ball or a spindle looks the same in all the given frames.
+     * @param frames The frames.
+     * @param spindle The index of the spindle, or -1 for the ball.
+     * @return True if it looks the same in all of them.
+     */
+    private static boolean framesMatch(RenderFrame[] frames, int spindle) {
+        for (int i = 1; i < frames.length; i++) {
+            boolean matches = (spindle < 0) ? frames[0].ballMatches(frames[i]) : frames[0].spindleMatches(frames[i], spindle);
+            if (!matches)
+                return false;
+        }
+        return true;
+    }
     
+    /**
+     * Adds the given area to the area that needs repainting.
+     * @param left The left of the area.
+     * @param top The top of the area.
+     * @param right The right of the area.
+     * @param bottom The bottom of the area.
+     */
+    private void markDirty(int left, int top, int right, int bottom) {
+        this.dirtyLeft = Math.min(this.dirtyLeft, left);
+        this.dirtyTop = Math.min(this.dirtyTop, top);
+        this.dirtyRight = Math.max(this.dirtyRight, right);
+        this.dirtyBottom = Math.max(this.dirtyBottom, bottom);
+    }
+    
+    /**
+     * Works out how far between the last two copied simulation steps this
+     * frame is.
+     * @return How far between the two steps to draw (0.0 is the older one,
+     * 1.0 is the newer one).
+     */
+    private double getAlpha() {
+        //The newest step is drawn one step late, so there is always a step on either side of what is drawn
+        long sinceStep = System.nanoTime() - this.currentFrame.getTime();
+        double alpha = (double)sinceStep / this.simulation.getStepNanos();
+        
+        return Math.max(0.0, Math.min(1.0, alpha));
+    }
+    
+    /**
+     * Gets an image of the background and the parts of the table that don't
+     * move (the walls and the goals), redrawing it first if the panel has
+     * been resized or a goal has lit up or gone out since it was last drawn.
+     * The pictures of the players are made again along with a new image, so
+     * that they always suit the screen the panel is on.
+     * @return The image, the same size as the panel.
+     */
+    private BufferedImage getTableLayer() {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        boolean leftLit = this.currentFrame.isLeftGoalLit();
+        boolean rightLit = this.currentFrame.isRightGoalLit();
+        
+        if ((this.tableLayer == null) || (width != this.tableLayerWidth) || (height != this.tableLayerHeight)) {
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            if (config != null)
+                this.tableLayer = config.createCompatibleImage(width, height);
+            else//Not on a screen (off-screen painting) - any image will do
+                this.tableLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            
+            this.tableLayerWidth = width;
+            this.tableLayerHeight = height;
+            this.playerSprites = new PlayerSprites(config);
+        } else if ((leftLit == this.tableLayerLeftLit) && (rightLit == this.tableLayerRightLit)) {
+            return this.tableLayer;//Nothing has changed
+        }
+        
+        Graphics2D g = this.tableLayer.createGraphics();
+        try {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, width, height);
+            
+            g.setColor(getForeground());
+            drawTableOutline(g, leftLit, rightLit);
+        } finally {
+            g.dispose();
+        }
+        
+        this.tableLayerLeftLit = leftLit;
+        this.tableLayerRightLit = rightLit;
+        
+        return this.tableLayer;
+    }
     
-    private void drawAllSpindles(Graphics g) {
+    /**
+     * Draws every spindle, in between the last two simulation steps.
+     * @param g The Graphics object to use to draw the spindles.
+     * @param alpha How far between the last two simulation steps to draw.
+     */
+    private void drawAllSpindles(Graphics g, double alpha) {
         Spindle[] allSpindles = this.state.getAllSpindles();
+        int numHuman = this.state.getHumanSpindles().length;
         
         //Spindles are too complicated - have them draw themselves
-        for (Spindle s : allSpindles) {
-            s.draw(g);
+        for (int i = 0; i < allSpindles.length; i++) {
+            Color color = (i < numHuman) ? this.state.getHumanColor() : this.state.getComputerColor();
+            int topY = this.currentFrame.getSpindleTopY(this.previousFrame, alpha, i);
+            allSpindles[i].draw(g, this.playerSprites, color, topY, this.currentFrame.getSpindleOrientation(i));
         }
     }
     
     /**
      * Draws the ball on the playfield.
      * @param g The Graphics object to use to draw the ball.
+     * @param alpha How far between the last two simulation steps to draw.
      */
-    private void drawBall(Graphics g) {
+    private void drawBall(Graphics g, double alpha) {
         Ball b = this.state.getBall();
         
-        if (!b.isOffTable()) {//If the ball is NOT off the table, draw it.
-            g.fillOval(b.getLocation().x - b.getRadius(), b.getLocation().y - b.getRadius(), 
+        if (!this.currentFrame.isBallOffTable()) {//If the ball is NOT off the table, draw it.
+            int x = this.currentFrame.getBallX(this.previousFrame, alpha);
+            int y = this.currentFrame.getBallY(this.previousFrame, alpha);
+            g.fillOval(x - b.getRadius(), y - b.getRadius(), 
                     b.getRadius() * 2, b.getRadius() * 2);
         }//Otherwise, don't draw the ball
     }
@@ -115,27 +378,28 @@ public class AppPanel extends JPanel implements ActionListener {
     /**
      * Draws the controls on to the screen to be helpful for the player.
      * @param g The Graphics object to use to draw.
+     * @param alpha How far between the last two simulation steps to draw.
      */
-    private void drawControls(Graphics g) {
+    private void drawControls(Graphics g, double alpha) {
         int offset = (this.getHeight() - this.state.getBottomWall().getY()) / 8;
         
         for (int i = 0; i < this.state.getHumanSpindles().length; i++) {
             Spindle s = this.state.getHumanSpindles()[i];
-            Point belowSpindle = new Point(s.getBottom().x, s.getBottom().y + offset);
+            int bottomY = this.currentFrame.getSpindleTopY(this.previousFrame, alpha, i) + s.getLength();
+            Point belowSpindle = new Point(s.getX(), bottomY + offset);
             
             String control = "" + s.getControl();
             
-            int fontSize = 30;
-            g.setFont(new Font("TimesRoman", Font.PLAIN, fontSize)); 
+            g.setFont(FONT);
             g.drawString(control, belowSpindle.x, belowSpindle.y);
             
-            if (s.isSelected()) {
+            if (this.currentFrame.isSpindleSelected(i)) {
                 Color prev = g.getColor();
                 g.setColor(Color.ORANGE);
                 Graphics2D g2 = (Graphics2D) g;
-                g2.setStroke(new BasicStroke(10));
+                g2.setStroke(SELECTION_STROKE);
                 
-                g.drawOval(belowSpindle.x - fontSize, belowSpindle.y - fontSize, 2 * fontSize, 2 * fontSize);
+                g.drawOval(belowSpindle.x - FONT_SIZE, belowSpindle.y - FONT_SIZE, 2 * FONT_SIZE, 2 * FONT_SIZE);
                 g.setColor(prev);//set the color back to normal
             }
         }
@@ -146,7 +410,7 @@ public class AppPanel extends JPanel implements ActionListener {
      * @param g The Graphics object in use by the panel to draw things.
      */
     private void drawScores(Graphics g) {
-        g.setFont(new Font("TimesRoman", Font.PLAIN, 30));
+        g.setFont(FONT);
         
         int xOffset = this.state.getLeftWall().getX() / 2;
         Point compScoreLoc = new Point(xOffset, 
@@ -154,15 +418,17 @@ public class AppPanel extends JPanel implements ActionListener {
         Point humanScoreLoc = new Point(this.state.getRightWall().getX() - (2 *xOffset),
                 this.state.getTopWall().getY() / 2);
         
-        g.drawString("Computer: " + this.state.getComputerScore(), compScoreLoc.x, compScoreLoc.y);
-        g.drawString("Human: " + this.state.getHumanScore(), humanScoreLoc.x, humanScoreLoc.y);
+        g.drawString("Computer: " + this.currentFrame.getComputerScore(), compScoreLoc.x, compScoreLoc.y);
+        g.drawString("Human: " + this.currentFrame.getHumanScore(), humanScoreLoc.x, humanScoreLoc.y);
     }
     
     /**
      * Draws the table outline (including the goals).
      * @param g The Graphics object used to draw the outline.
+     * @param leftLit Whether the left goal is lit up.
+     * @param rightLit Whether the right goal is lit up.
      */
-    private void drawTableOutline(Graphics g) {
+    private void drawTableOutline(Graphics g, boolean leftLit, boolean rightLit) {
         LeftRightWall left = this.state.getLeftWall();
         LeftRightWall right = this.state.getRightWall();
         TopBottomWall top = this.state.getTopWall();
@@ -181,7 +447,7 @@ public class AppPanel extends JPanel implements ActionListener {
         Color prev = g.getColor();//Save the color
         
         //Draw the goals
-        if (leftGoal.isLitUp()) {
+        if (leftLit) {
             g.setColor(this.state.getHumanColor());
             g.fillRect(leftGoal.getTopLeftCornerX(), leftGoal.getTopLeftCornerY(),
                 leftGoal.getWidth(), leftGoal.getHeight());
@@ -192,7 +458,7 @@ public class AppPanel extends JPanel implements ActionListener {
         
         g.setColor(prev);
         
-        if (rightGoal.isLitUp()) {
+        if (rightLit) {
             g.setColor(this.state.getComputerColor());
             g.fillRect(rightGoal.getTopLeftCornerX(), rightGoal.getTopLeftCornerY(),
                 rightGoal.getWidth(), rightGoal.getHeight());
@@ -209,11 +475,41 @@ public class AppPanel extends JPanel implements ActionListener {
      * @param g The Graphics object used to draw the outline.
      */
     private void drawTime(Graphics g) {
-        g.setFont(new Font("TimesRoman", Font.PLAIN, 30));
+        g.setFont(FONT);
         
         int xOffset = this.getWidth() / 2;
         int yOffset = this.getHeight() / 10;
         
-        g.drawString("Time: " + this.state.getElapsedTime(), xOffset, yOffset);
+        g.drawString("Time: " + this.currentFrame.getElapsedTime(), xOffset, yOffset);
+    }
+    
+    /**
+     * Draws the input latency percentiles at the bottom of the panel.
+     * @param g The Graphics object used to draw.
+     */
+    private void drawLatency(Graphics g) {
+        LatencyTracker latency = this.logic.getLatencyTracker();
+        
+        //Only make the text again when there is something new to show
+        int numSamples = latency.getNumSamples();
+        if (numSamples != this.latencyTextSamples) {
+            this.latencyText = String.format("Input latency p50/p95/p99: %.1f/%.1f/%.1f ms (%d)",
+                    LatencyTracker.toMillis(latency.getPercentile(50)),
+                    LatencyTracker.toMillis(latency.getPercentile(95)),
+                    LatencyTracker.toMillis(latency.getPercentile(99)), numSamples);
+            this.latencyTextSamples = numSamples;
+        }
+        
+        g.setFont(OVERLAY_FONT);
+        g.drawString(this.latencyText, 10, getLatencyY(g.getFontMetrics()));
+    }
+    
+    /**
+     * Gets where the input latency is drawn.
+     * @param metrics The metrics of the font it is drawn in.
+     * @return The y value of the baseline of the text.
+     */
+    private int getLatencyY(FontMetrics metrics) {
+        return getHeight() - metrics.getDescent() - 2;
     }
 }
@@ -1,5 +1,6 @@
 package fussball;
 
+import java.awt.Canvas;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import javax.swing.JFrame;
@@ -9,18 +10,42 @@ import javax.swing.JFrame;
  * @author Max Strange
  */
 public class AppWindow extends JFrame implements KeyListener {
+    private final int FRAMES_PER_SECOND = 60;//The frame rate active rendering aims for
+    private final int LATENCY_OVERLAY_KEY = KeyEvent.VK_F2;//Shows or hides the input latency
+    private final int LATENCY_DUMP_KEY = KeyEvent.VK_F3;//Writes the input latency to a file
+    
     private GameState state;
     private AppPanel panel;
     private GameLogic logic;
     private boolean gameOver = false;
+    private final Canvas canvas;//The canvas drawn on by active rendering (null if it's off)
     
     /**
      * Constructor for the AppWindow.
      */
     public AppWindow() {
+        this(false);
+    }
+    
+    /**
+     * Constructor for the AppWindow.
+     * @param activeRendering If true, the game is drawn by a render thread
+     * of its own straight onto a canvas, instead of being repainted by Swing.
+     */
+    public AppWindow(boolean activeRendering) {
         this.state = state;
         this.panel = new AppPanel(this);
-        add(this.panel);
+        
+        if (activeRendering) {
+            this.canvas = new Canvas();
+            this.canvas.setIgnoreRepaint(true);//The render thread does all the drawing
+            this.canvas.setFocusable(false);//Leave the keyboard focus with the window
+            setIgnoreRepaint(true);
+            add(this.canvas);
+        } else {
+            this.canvas = null;
+            add(this.panel);
+        }
     }
     
     /**
@@ -32,7 +57,15 @@ public class AppWindow extends JFrame implements KeyListener {
         this.state = state;
         this.logic = logic;
         this.logic.initialize(state);
-        this.panel.initialize(state, logic);
+        
+        if (this.canvas != null) {
+            //The panel is never shown, but it still draws the game, so it needs to be the size of the canvas
+            this.panel.setSize(this.canvas.getWidth(), this.canvas.getHeight());
+            this.panel.initialize(state, logic);
+            this.panel.useActiveRendering(this.canvas, FRAMES_PER_SECOND);
+        } else {
+            this.panel.initialize(state, logic);
+        }
     }
     
     /**
@@ -74,13 +107,22 @@ public class AppWindow extends JFrame implements KeyListener {
 
     @Override
     public void keyPressed(KeyEvent ke) {
-        this.logic.handleKeyPressed(ke);
-        this.panel.repaint();
+        if (ke.getKeyCode() == LATENCY_OVERLAY_KEY) {
+            this.panel.toggleLatencyOverlay();
+            return;
+        } else if (ke.getKeyCode() == LATENCY_DUMP_KEY) {
+            this.panel.dumpLatency();
+            return;
+        }
+        
+        this.logic.handleKeyPressed(ke);//The panel repaints whatever this changes
     }
 
     @Override
     public void keyReleased(KeyEvent ke) {
-        this.logic.handleKeyReleased(ke);
-        this.panel.repaint();
+        if ((ke.getKeyCode() == LATENCY_OVERLAY_KEY) || (ke.getKeyCode() == LATENCY_DUMP_KEY))
+            return;//Not for the game (their key codes could look like a spindle's control letter)
+        
+        this.logic.handleKeyReleased(ke);//The panel repaints whatever this changes
     }
 }
@@ -1,29 +1,54 @@
 package fussball;
 
-import java.awt.Point;
-import java.util.Random;
-
 /**
  * A class to represent the Ball that the game uses.
  * @author Max Strange
  */
 public class Ball {
     private final int RADIUS = 10;//The ball's radius
-    private final double ACC_X_MAG = 25;//The magnitude of the ball's acceleration (when it accelerates) in the X
+    static final double DEFAULT_ACC_X_MAG = 25;//The magnitude of the ball's acceleration (when it accelerates) in the X
     private final double ACC_Y_MAG = 25;//The magnitude of the ball's acceleration (when it accelerates) in the Y
     /**
      * The value to be multiplied against the velocity every tick to simulate
-     * friction on the ball.
+     * friction on the ball (unless it is set otherwise).
+     */
+    static final double DEFAULT_FRIC_FRAC = 0.9;
+    /**
+     * Any velocity component smaller than this (in pixels per tick) is taken
+     * to be zero. Otherwise friction keeps shrinking the velocity of a ball at
+     * rest until it is a denormal number, which is very slow to compute with.
      */
-    private final double FRIC_FRAC = 0.9;
+    private final double MIN_SPEED = 0.001;
     private final int DELAY = 10;//The number of ticks to delay before resetting the ball after scoring
-    private final Point startingLocation;//The Location the ball goes back to every time it resets
+    private final int MAX_IMPACTS = 8;//The most things the ball can bounce off of in a single step
+    static final int SNAPSHOT_LENGTH = 6;//The number of longs the ball takes up in a snapshot
+    private static final int NO_WALL = 0;
+    private static final int TOP_WALL = 1;
+    private static final int BOTTOM_WALL = 2;
+    private static final int LEFT_WALL = 3;
+    private static final int RIGHT_WALL = 4;
+    private final int startingX;//The x location the ball goes back to every time it resets
+    private final int startingY;//The y location the ball goes back to every time it resets
+    private final GameRandom random;//The match's random number generator, used to pick new velocities
         
-    private int xLoc;//The current x location of the ball
-    private int yLoc;//The current y location of the ball
-    private Vector velocity;//The current velocity of the ball
+    private double xLoc;//The current x location of the ball
+    private double yLoc;//The current y location of the ball
+    private final Vector velocity = new Vector(0.0, 0.0);//The current velocity of the ball (updated in place)
     private boolean offTable = false;//Whether the ball is currently off the table (waiting to be reset after a goal)
-    private int reappearTimer = 0;//The number of elapsed ticks since the ball disappeared after a goal.
+    private int reappearTimer = 0;//The number of elapsed steps since the ball disappeared after a goal.
+    private int wallHit = NO_WALL;//The wall found by the last call to timeToWall
+    
+    /*
+    A tick can be simulated in several smaller steps. Velocities are in pixels
+    per tick, so each step moves the ball by a fraction of its velocity, applies
+    a fraction of the friction and a fraction of every kick (kicks are applied
+    on every step that the ball overlaps a foot).
+    */
+    private int stepsPerTick = 1;//The number of steps each tick is simulated in
+    private double stepFraction = 1.0;//The fraction of a tick that one step is
+    private double frictionPerStep = DEFAULT_FRIC_FRAC;//The friction to apply every step
+    private double fricFrac = DEFAULT_FRIC_FRAC;//The friction to apply every tick
+    private double accXMag = DEFAULT_ACC_X_MAG;//How hard a kick accelerates the ball in the X
     
     
     
@@ -31,11 +56,14 @@ public class Ball {
      * Constructor for the Ball.
      * @param xLocation The starting x location for the ball.
      * @param yLocation The starting y location for the ball.
+     * @param random The random number generator to use for the ball's velocity.
      */
-    public Ball(int xLocation, int yLocation) {
+    public Ball(int xLocation, int yLocation, GameRandom random) {
+        this.random = random;
         this.xLoc = xLocation;
         this.yLoc = yLocation;
-        this.startingLocation = new Point(xLocation, yLocation);
+        this.startingX = xLocation;
+        this.startingY = yLocation;
         
         resetVelocity();
     }
@@ -48,9 +76,9 @@ public class Ball {
      * right.
      */
     public void accelerateLeftRight(boolean left) {
-        double velX = left ? this.velocity.getXComponent() - this.ACC_X_MAG : 
-                this.velocity.getXComponent() + this.ACC_X_MAG;
-        this.velocity = new Vector(velX, this.velocity.getYComponent());
+        double velX = left ? this.velocity.getXComponent() - (this.accXMag * this.stepFraction) : 
+                this.velocity.getXComponent() + (this.accXMag * this.stepFraction);
+        this.velocity.setXComponent(velX);
     }
     
     /**
@@ -61,8 +89,8 @@ public class Ball {
      * right.
      */
     public void accelerateLeftRight(double proportion) {
-        double velX = this.velocity.getXComponent() + ((proportion / 2.0) * this.ACC_X_MAG);
-        this.velocity = new Vector(velX, this.velocity.getYComponent());
+        double velX = this.velocity.getXComponent() + ((proportion / 2.0) * this.accXMag * this.stepFraction);
+        this.velocity.setXComponent(velX);
     }
     
     /**
@@ -70,9 +98,9 @@ public class Ball {
      * @param up If true, accelerates the ball up. Otherwise, down.
      */
     public void accelerateUpDown(boolean up) {
-        double velY = up ? this.velocity.getYComponent() - this.ACC_Y_MAG :
-                this.velocity.getYComponent() + this.ACC_Y_MAG;
-        this.velocity = new Vector(this.velocity.getXComponent(), velY);
+        double velY = up ? this.velocity.getYComponent() - (this.ACC_Y_MAG * this.stepFraction) :
+                this.velocity.getYComponent() + (this.ACC_Y_MAG * this.stepFraction);
+        this.velocity.setYComponent(velY);
     }
     
     /**
@@ -82,30 +110,31 @@ public class Ball {
      * ball downwards.
      */
     public void accelerateUpDown(double proportion) {
-        double velY = this.velocity.getYComponent() + proportion;
-        this.velocity = new Vector(this.velocity.getXComponent(), velY);
+        double velY = this.velocity.getYComponent() + (proportion * this.stepFraction);
+        this.velocity.setYComponent(velY);
     }
     
     /**
-     * Moves the ball. Checks for collision with walls and responds appropriately.
+     * Moves the ball one step. Checks for collision with walls and players
+     * along the way and responds appropriately.
      * @param table The table the ball is on
+     * @param players The players the ball might run into.
      * @return The player who scored (if anyone).
      */
-    public Score move(Table table) {
+    public Score move(Table table, PlayerRegistry players) {
         Score retr;
         
         //Check if the ball is off the table and maybe reset it (if it has been long enough off the table)
         if (this.offTable) {
             this.reappearTimer++;
-            if (this.reappearTimer > DELAY) // Reset the ball (it has been gone long enough), then move it
+            if (this.reappearTimer > (DELAY * this.stepsPerTick)) // Reset the ball (it has been gone long enough), then move it
                 reset();
             else    //If the ball is off the table, just leave it alone - don't move it, just return.
                 return Score.NOBODY;
         }
         
-        adjustLocationBlind();
-        adjustLocationBasedOnBoundaries(table);
-        retr = bounceOffTableWalls(table);
+        retr = sweep(table, players);
+        adjustLocationBasedOnBoundaries(table);//Just in case
         applyFriction();
         
         return retr;
@@ -116,9 +145,8 @@ public class Ball {
      * @param left To the left if true, otherwise to the right.
      */
     public void reflectLeftRight(boolean left) {
-        double velY = this.velocity.getYComponent();
         double velX = left ? Math.abs(this.velocity.getXComponent()) * (-1.0) : Math.abs(this.velocity.getXComponent());
-        this.velocity = new Vector(velX, velY);
+        this.velocity.setXComponent(velX);
     }
     
     /**
@@ -126,9 +154,8 @@ public class Ball {
      * @param up To the up if true, otherwise to the down.
      */
     public void reflectUpDown(boolean up) {
-        double velX = this.velocity.getXComponent();
         double velY = up ? Math.abs(this.velocity.getYComponent()) : Math.abs(this.velocity.getYComponent()) * (-1.0);
-        this.velocity = new Vector(velX, velY);
+        this.velocity.setYComponent(velY);
     }
     
     /**
@@ -136,8 +163,8 @@ public class Ball {
      */
     public void reset() {
         resetVelocity();
-        this.xLoc = (int)(this.startingLocation.getX() + 0.5);
-        this.yLoc = (int)(this.startingLocation.getY() + 0.5);
+        this.xLoc = this.startingX;
+        this.yLoc = this.startingY;
         
         this.reappearTimer = 0;//reset the reappearTimer
         this.offTable = false;//No longer off the table.
@@ -145,12 +172,125 @@ public class Ball {
     
     
     
+    /**
+     * Makes this ball the same as another one (where it is, how fast it is
+     * going and whether it is off the table), without making anything new.
+     * Both balls must be on the same size of table.
+     * @param other The ball to copy.
+     */
+    public void copyFrom(Ball other) {
+        this.xLoc = other.xLoc;
+        this.yLoc = other.yLoc;
+        this.velocity.set(other.velocity.getXComponent(), other.velocity.getYComponent());
+        this.offTable = other.offTable;
+        this.reappearTimer = other.reappearTimer;
+        this.accXMag = other.accXMag;
+        if ((this.stepsPerTick != other.stepsPerTick) || (this.fricFrac != other.fricFrac)) {
+            this.fricFrac = other.fricFrac;
+            setStepsPerTick(other.stepsPerTick);
+        }
+    }
+    
+    /**
+     * Writes the ball's state into a snapshot (see GameSnapshot).
+     * @param data The snapshot's data.
+     * @param offset Where to start writing.
+     * @return Where the next thing should be written.
+     */
+    public int writeTo(long[] data, int offset) {
+        data[offset] = Double.doubleToRawLongBits(this.xLoc);
+        data[offset + 1] = Double.doubleToRawLongBits(this.yLoc);
+        data[offset + 2] = Double.doubleToRawLongBits(this.velocity.getXComponent());
+        data[offset + 3] = Double.doubleToRawLongBits(this.velocity.getYComponent());
+        data[offset + 4] = this.offTable ? 1 : 0;
+        data[offset + 5] = this.reappearTimer;
+        return offset + SNAPSHOT_LENGTH;
+    }
+    
+    /**
+     * Reads the ball's state back out of a snapshot written by writeTo.
+     * @param data The snapshot's data.
+     * @param offset Where to start reading.
+     * @return Where the next thing should be read from.
+     */
+    public int readFrom(long[] data, int offset) {
+        this.xLoc = Double.longBitsToDouble(data[offset]);
+        this.yLoc = Double.longBitsToDouble(data[offset + 1]);
+        this.velocity.set(Double.longBitsToDouble(data[offset + 2]), Double.longBitsToDouble(data[offset + 3]));
+        this.offTable = data[offset + 4] != 0;
+        this.reappearTimer = (int)data[offset + 5];
+        return offset + SNAPSHOT_LENGTH;
+    }
+    
+    /**
+     * Sets the number of steps each tick is simulated in.
+     * @param stepsPerTick The number of steps per tick (at least 1).
+     */
+    public void setStepsPerTick(int stepsPerTick) {
+        this.stepsPerTick = stepsPerTick;
+        this.stepFraction = 1.0 / stepsPerTick;
+        this.frictionPerStep = StrictMath.pow(this.fricFrac, this.stepFraction);//StrictMath so replays come out exactly the same
+    }
+    
+    /**
+     * Sets how much friction slows the ball down.
+     * @param fricFrac The value to be multiplied against the velocity every
+     * tick (between 0 and 1).
+     */
+    public void setFriction(double fricFrac) {
+        if ((fricFrac <= 0.0) || (fricFrac > 1.0))
+            throw new IllegalArgumentException("The friction must be between 0 and 1.");
+        
+        this.fricFrac = fricFrac;
+        setStepsPerTick(this.stepsPerTick);
+    }
+    
+    /**
+     * Sets how hard kicks accelerate the ball in the X.
+     * @param accXMag The magnitude of the acceleration.
+     */
+    public void setAccelerationX(double accXMag) {
+        this.accXMag = accXMag;
+    }
+    
+    
+    
     /**
      * Gets the RADIUS of the ball.
      * @return the RADIUS of the ball as a double.
      */
     public int getRadius() { return this.RADIUS; }
-    public Point getLocation() { return new Point(this.xLoc, this.yLoc); }
+    /**
+     * Gets the x location of the center of the ball.
+     * @return The x location of the ball.
+     */
+    public int getX() { return (int)(this.xLoc + 0.5); }
+    /**
+     * Gets the y location of the center of the ball.
+     * @return The y location of the ball.
+     */
+    public int getY() { return (int)(this.yLoc + 0.5); }
+    public double getPreciseX() { return this.xLoc; }
+    public double getPreciseY() { return this.yLoc; }
+    /**
+     * Gets the x component of the ball's velocity.
+     * @return The x velocity in pixels per tick.
+     */
+    public double getVelocityX() { return this.velocity.getXComponent(); }
+    /**
+     * Gets the y component of the ball's velocity.
+     * @return The y velocity in pixels per tick.
+     */
+    public double getVelocityY() { return this.velocity.getYComponent(); }
+    /**
+     * Gets the friction applied each step: the velocity is multiplied by this
+     * after every step.
+     * @return The friction per step.
+     */
+    public double getFrictionPerStep() { return this.frictionPerStep; }
+    public double getFriction() { return this.fricFrac; }
+    public double getAccelerationX() { return this.accXMag; }
+    public int getStepsPerTick() { return this.stepsPerTick; }
     public boolean isOffTable() { return this.offTable; }
     
     
@@ -180,44 +320,124 @@ public class Ball {
     }
     
     /**
-     * Adjusts the location of the ball blindly (that is, without worrying about
-     * collisions or boundaries)
+     * Applies friction to the ball's velocity.
      */
-    private void adjustLocationBlind() {
-        int prevX = (int)(this.xLoc + 0.5);
-        int prevY = (int)(this.yLoc + 0.5);
-        this.xLoc += this.velocity.getXComponent();
-        this.yLoc += this.velocity.getYComponent();
-        int afterX = (int)(this.xLoc + 0.5);
-        int afterY = (int)(this.yLoc + 0.5);
+    private void applyFriction() {
+        this.velocity.scale(this.frictionPerStep);
+        
+        if (Math.abs(this.velocity.getXComponent()) < MIN_SPEED)
+            this.velocity.setXComponent(0.0);
+        if (Math.abs(this.velocity.getYComponent()) < MIN_SPEED)
+            this.velocity.setYComponent(0.0);
     }
     
     /**
-     * Applies friction to the ball's velocity.
+     * Moves the ball along its velocity for one step, stopping at the first
+     * thing it hits (a player or a wall), responding to it, and then carrying
+     * on with whatever is left of the step. Because the ball stops where it
+     * first touches something instead of jumping the whole way and checking
+     * afterwards, it can't pass through players or walls no matter how big
+     * the step is.
+     * @param table The table the ball is on.
+     * @param players The players that the ball might hit.
+     * @return The player who scored (if anyone).
      */
-    private void applyFriction() {
-        double fractionX = this.velocity.getXComponent() * FRIC_FRAC;
-        double fractionY = this.velocity.getYComponent() * FRIC_FRAC;
-        this.velocity = new Vector(fractionX, fractionY);
+    private Score sweep(Table table, PlayerRegistry players) {
+        double remaining = 1.0;//The fraction of the step's movement still left to do
+        
+        for (int i = 0; (i < MAX_IMPACTS) && (remaining > 0.0); i++) {
+            double dx = this.velocity.getXComponent() * this.stepFraction * remaining;
+            double dy = this.velocity.getYComponent() * this.stepFraction * remaining;
+            if ((dx == 0.0) && (dy == 0.0))
+                break;//Not moving
+            
+            double wallTime = timeToWall(table, dx, dy);
+            double playerTime = players.sweep(this, dx, dy);
+            
+            if ((playerTime < 1.0) && (playerTime <= wallTime)) {//Hit a player first
+                this.xLoc = players.getContactX();
+                this.yLoc = players.getContactY();
+                players.collide(players.getLastHit(), this);
+                remaining *= (1.0 - playerTime);
+            } else if (wallTime < 1.0) {//Hit a wall first
+                this.xLoc += dx * wallTime;
+                this.yLoc += dy * wallTime;
+                Score score = bounceOffWall(table, this.wallHit);
+                if (score != Score.NOBODY)
+                    return score;
+                remaining *= (1.0 - wallTime);
+            } else {//Didn't hit anything
+                this.xLoc += dx;
+                this.yLoc += dy;
+                remaining = 0.0;
+            }
+        }
+        
+        return Score.NOBODY;
     }
     
     /**
-     * Bounce off the table's walls if it hits one. Checks if it is a score.
-     * If so, disappears the ball so that it can be reset at a later time.
+     * Works out when (if at all) the ball would touch one of the walls if it
+     * moved by the given amount. The wall it would touch first is put in
+     * wallHit.
+     * @param table The table the ball is on.
+     * @param dx How far the ball would move in the x direction.
+     * @param dy How far the ball would move in the y direction.
+     * @return The fraction of the movement at which the ball first touches a
+     * wall, or 1.0 if it doesn't touch any.
+     */
+    private double timeToWall(Table table, double dx, double dy) {
+        double time = 1.0;
+        this.wallHit = NO_WALL;
+        
+        if (dy < 0.0) {//Moving up
+            double limit = table.getTopWall().getY() + this.RADIUS;
+            if ((this.yLoc + dy) < limit) {
+                time = Math.max(0.0, (limit - this.yLoc) / dy);
+                this.wallHit = TOP_WALL;
+            }
+        } else if (dy > 0.0) {//Moving down
+            double limit = table.getBottomWall().getY() - this.RADIUS;
+            if ((this.yLoc + dy) > limit) {
+                time = Math.max(0.0, (limit - this.yLoc) / dy);
+                this.wallHit = BOTTOM_WALL;
+            }
+        }
+        
+        if (dx < 0.0) {//Moving left
+            double limit = table.getLeftWall().getX() + this.RADIUS;
+            if ((this.xLoc + dx) < limit) {
+                double t = Math.max(0.0, (limit - this.xLoc) / dx);
+                if (t < time) {
+                    time = t;
+                    this.wallHit = LEFT_WALL;
+                }
+            }
+        } else if (dx > 0.0) {//Moving right
+            double limit = table.getRightWall().getX() - this.RADIUS;
+            if ((this.xLoc + dx) > limit) {
+                double t = Math.max(0.0, (limit - this.xLoc) / dx);
+                if (t < time) {
+                    time = t;
+                    this.wallHit = RIGHT_WALL;
+                }
+            }
+        }
+        
+        return time;
+    }
+    
+    /**
+     * Bounces off the given wall, which the ball is touching. Checks if it is a
+     * score. If so, disappears the ball so that it can be reset at a later time.
      * @param table The table object used in the game.
+     * @param wall The wall the ball is touching.
      * @return The player who scored (if anyone).
      */
-    private Score bounceOffTableWalls(Table table) {
-        TopBottomWall top = table.getTopWall();
-        TopBottomWall bottom = table.getBottomWall();
-        LeftRightWall left = table.getLeftWall();
-        LeftRightWall right = table.getRightWall();
-        
-        if ((this.yLoc - this.RADIUS) <= top.getY()) {//Collision with top wall
-            reflect(false);
-        } else if ((this.yLoc + this.RADIUS) >= bottom.getY()) {//Collision with bottom wall
+    private Score bounceOffWall(Table table, int wall) {
+        if ((wall == TOP_WALL) || (wall == BOTTOM_WALL)) {//Collision with top or bottom wall
             reflect(false);
-        } else if ((this.xLoc - this.RADIUS) <= left.getX()) {//Collision with left wall
+        } else if (wall == LEFT_WALL) {//Collision with left wall
             reflect(true);
             
             boolean belowTopOfGoal = ((this.yLoc - this.RADIUS) >= table.getLeftGoal().getTopLeftCornerY());
@@ -228,7 +448,7 @@ public class Ball {
                 return Score.HUMAN;//The human scored on the computer's goal
             }
             
-        } else if ((this.xLoc + this.RADIUS) >= right.getX()) {//Collision with right wall
+        } else if (wall == RIGHT_WALL) {//Collision with right wall
             reflect(true);
             
             boolean belowTopOfGoal = ((this.yLoc - this.RADIUS) >= table.getRightGoal().getTopLeftCornerY());
@@ -260,21 +480,21 @@ public class Ball {
      */
     private void reflect(boolean leftOrRight) {
         if (leftOrRight)
-            this.velocity = new Vector(this.velocity.getXComponent() * (-1.0), this.velocity.getYComponent());
+            this.velocity.setXComponent(this.velocity.getXComponent() * (-1.0));
         else
-            this.velocity = new Vector(this.velocity.getXComponent(), this.velocity.getYComponent() * (-1.0));
+            this.velocity.setYComponent(this.velocity.getYComponent() * (-1.0));
     }
         
     /**
      * Resets the velocity to a random one up to some upper limit.
      */
     private void resetVelocity() {
-        Random r = new Random();
+        GameRandom r = this.random;
         boolean negX = r.nextBoolean();
         boolean negY = r.nextBoolean();
         int upperLim = 30;
         int vx = negX ? r.nextInt(upperLim) * (-1) : r.nextInt(upperLim);
         int vy = negY ? r.nextInt(upperLim) * (-1) : r.nextInt(upperLim);
-        this.velocity = new Vector(vx, vy);
+        this.velocity.set(vx, vy);
     }
 }
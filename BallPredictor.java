@@ -0,0 +1,177 @@
+package fussball;
+
+/**
+ * Predicts where the ball will cross some columns of the table (the x values
+ * of the spindles), and when. Friction slows the ball by the same fraction
+ * every step, so how far it will have gone after any number of steps is a
+ * geometric series with a closed form. And the walls are straight up and
+ * down or across, so bouncing off them is the same as carrying on in a
+ * straight line across a mirror image of the table. Together these give the
+ * whole path of the ball (ignoring the players) in constant time per column,
+ * without stepping through it.
+ *
+ * Every column is predicted in one go, from one look at the ball, so that all
+ * of a side's spindles can share the prediction.
+ * @author Max Strange
+ */
+public class BallPredictor {
+    private final int[] columns;//The x values of the columns to predict crossings for
+    private final double[] crossingY;//Where the ball will cross each column
+    private final double[] crossingTicks;//How many ticks from now the ball will cross each column (infinite if it won't)
+
+    /**
+     * Constructor.
+     * @param columns The x values of the columns to predict crossings for.
+     */
+    public BallPredictor(int[] columns) {
+        this.columns = columns.clone();
+        this.crossingY = new double[columns.length];
+        this.crossingTicks = new double[columns.length];
+    }
+
+
+
+    /**
+     * Makes a predictor for the columns of some spindles.
+     * @param spindles The spindles (they must already be initialized).
+     * @return The predictor. Column i is spindle i's.
+     */
+    public static BallPredictor forSpindles(Spindle[] spindles) {
+        int[] columns = new int[spindles.length];
+        for (int i = 0; i < spindles.length; i++) {
+            columns[i] = spindles[i].getX();
+        }
+        return new BallPredictor(columns);
+    }
+
+
+
+    /**
+     * Predicts where and when the ball will next cross each of the columns.
+     * The results can then be got from getCrossingY() and getCrossingTicks().
+     * @param ball The ball.
+     * @param table The table the ball is on.
+     */
+    public void predict(Ball ball, Table table) {
+        if (ball.isOffTable()) {
+            for (int i = 0; i < this.columns.length; i++) {
+                this.crossingY[i] = table.getCenterY();//It will be reset to the middle
+                this.crossingTicks[i] = Double.POSITIVE_INFINITY;
+            }
+            return;
+        }
+
+        double x = ball.getPreciseX();
+        double y = ball.getPreciseY();
+        double vx = ball.getVelocityX();
+        double vy = ball.getVelocityY();
+        int r = ball.getRadius();
+        double left = table.getLeftWall().getX() + r;
+        double right = table.getRightWall().getX() - r;
+        double top = table.getTopWall().getY() + r;
+        double bottom = table.getBottomWall().getY() - r;
+
+        /*
+        After k steps the ball has moved its velocity times
+        stepFraction * (1 - f^k) / (1 - f), where f is the friction per step.
+        Call the multiplier of the velocity "s". The furthest the ball can ever
+        go is with k infinite.
+        */
+        int stepsPerTick = ball.getStepsPerTick();
+        double stepFraction = 1.0 / stepsPerTick;
+        double f = ball.getFrictionPerStep();
+        double maxS = stepFraction / (1.0 - f);
+
+        for (int i = 0; i < this.columns.length; i++) {
+            double s = distanceToColumn(x, vx, this.columns[i], left, right);
+            if (s == 0.0) {//Already there
+                this.crossingY[i] = y;
+                this.crossingTicks[i] = 0.0;
+            } else if (s >= maxS) {//Stops before it gets there
+                this.crossingY[i] = fold(y + (vy * maxS), top, bottom);
+                this.crossingTicks[i] = Double.POSITIVE_INFINITY;
+            } else {
+                double steps = Math.ceil(StrictMath.log(1.0 - ((s * (1.0 - f)) / stepFraction)) / StrictMath.log(f));
+                this.crossingY[i] = fold(y + (vy * s), top, bottom);
+                this.crossingTicks[i] = steps / stepsPerTick;
+            }
+        }
+    }
+
+    /**
+     * Gets where the ball will cross a column. If it won't, this is where it
+     * will stop (or where it will reappear, if it's off the table).
+     * @param column The index of the column.
+     * @return The y value of the ball's center at the crossing.
+     */
+    public double getCrossingY(int column) { return this.crossingY[column]; }
+    /**
+     * Gets when the ball will cross a column.
+     * @param column The index of the column.
+     * @return The number of ticks from now, or Double.POSITIVE_INFINITY if it won't.
+     */
+    public double getCrossingTicks(int column) { return this.crossingTicks[column]; }
+    public int getNumColumns() { return this.columns.length; }
+
+
+
+    /**
+     * Works out how far the ball has to go (as a multiple of its x velocity)
+     * to next cross a column, bouncing off the left and right walls.
+     * @param x The ball's x location.
+     * @param vx The ball's x velocity.
+     * @param column The x value of the column.
+     * @param left The least x value the ball's center can have.
+     * @param right The greatest x value the ball's center can have.
+     * @return The multiple of vx, or infinity if the ball isn't moving across.
+     */
+    private static double distanceToColumn(double x, double vx, double column, double left, double right) {
+        if (x == column)
+            return 0.0;
+        if (vx == 0.0)
+            return Double.POSITIVE_INFINITY;
+
+        /*
+        Unfold the bounces: the ball is at the column (in the real table)
+        whenever its unbounced x is the column or the column's mirror image in
+        the left wall, plus any whole number of trips there and back.
+        */
+        double period = 2.0 * (right - left);
+        return Math.min(distanceToImage(x, vx, column, period),
+                distanceToImage(x, vx, (2.0 * left) - column, period));
+    }
+
+    /**
+     * Works out how far the ball has to go (as a multiple of its x velocity)
+     * until its unbounced x is the given x plus a whole number of periods.
+     * @param x The ball's x location.
+     * @param vx The ball's x velocity (not zero).
+     * @param image The x value to get to.
+     * @param period The distance there and back across the table.
+     * @return The multiple of vx.
+     */
+    private static double distanceToImage(double x, double vx, double image, double period) {
+        double k = (vx > 0.0) ? Math.ceil((x - image) / period) : Math.floor((x - image) / period);
+        return ((image + (k * period)) - x) / vx;
+    }
+
+    /**
+     * Folds an unbounced position back onto the table, as if it had bounced
+     * between two walls.
+     * @param position The position as if there were no walls.
+     * @param low The lowest the position can be.
+     * @param high The highest the position can be.
+     * @return The position after bouncing.
+     */
+    private static double fold(double position, double low, double high) {
+        double width = high - low;
+        if (width <= 0.0)
+            return low;
+
+        double u = (position - low) % (2.0 * width);
+        if (u < 0.0)
+            u += 2.0 * width;
+
+        return (u <= width) ? (low + u) : (high - (u - width));
+    }
+}
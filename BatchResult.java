@@ -0,0 +1,147 @@
+package fussball;
+
+/**
+ * The combined results of a batch of simulated matches. Each worker keeps its
+ * own BatchResult and they are added together at the end, so nothing is
+ * shared between workers while the matches are being played.
+ * @author Max Strange
+ */
+public class BatchResult {
+    private int numMatches = 0;
+    private int humanWins = 0;//Wins for the left (human) side
+    private int computerWins = 0;//Wins for the right (computer) side
+    private long totalTicks = 0;
+    private int minTicks = Integer.MAX_VALUE;
+    private int maxTicks = 0;
+    private final int[] humanGoalCounts;//How many matches ended with the human side on each number of goals
+    private final int[] computerGoalCounts;//How many matches ended with the computer side on each number of goals
+    private long elapsedNanos = 0;//How long the batch took to play
+
+    /**
+     * Constructor.
+     * @param scoreToPlayTo The score the matches are played to (the most goals
+     * either side can end up with).
+     */
+    public BatchResult(int scoreToPlayTo) {
+        this.humanGoalCounts = new int[scoreToPlayTo + 1];
+        this.computerGoalCounts = new int[scoreToPlayTo + 1];
+    }
+
+
+
+    /**
+     * Adds a finished (or abandoned) match to the results.
+     * @param match The match.
+     */
+    public void recordMatch(HeadlessMatch match) {
+        GameState state = match.getState();
+
+        this.numMatches++;
+        if (state.getWinner() == Score.HUMAN)
+            this.humanWins++;
+        else if (state.getWinner() == Score.COMPUTER)
+            this.computerWins++;
+
+        int ticks = match.getNumTicks();
+        this.totalTicks += ticks;
+        this.minTicks = Math.min(this.minTicks, ticks);
+        this.maxTicks = Math.max(this.maxTicks, ticks);
+
+        this.humanGoalCounts[Math.min(state.getHumanScore(), this.humanGoalCounts.length - 1)]++;
+        this.computerGoalCounts[Math.min(state.getComputerScore(), this.computerGoalCounts.length - 1)]++;
+    }
+
+    /**
+     * Adds another batch's results into this one.
+     * @param other The other results.
+     */
+    public void add(BatchResult other) {
+        this.numMatches += other.numMatches;
+        this.humanWins += other.humanWins;
+        this.computerWins += other.computerWins;
+        this.totalTicks += other.totalTicks;
+        this.minTicks = Math.min(this.minTicks, other.minTicks);
+        this.maxTicks = Math.max(this.maxTicks, other.maxTicks);
+
+        for (int i = 0; i < this.humanGoalCounts.length; i++) {
+            this.humanGoalCounts[i] += other.humanGoalCounts[i];
+            this.computerGoalCounts[i] += other.computerGoalCounts[i];
+        }
+    }
+
+    /**
+     * Sets how long the batch took to play.
+     * @param elapsedNanos The time taken in nanoseconds.
+     */
+    public void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        String newline = System.getProperty("line.separator");
+
+        sb.append("Matches: ").append(this.numMatches).append(newline);
+        sb.append("Left side (human) win rate: ").append(getHumanWinRate()).append(newline);
+        sb.append("Right side (computer) win rate: ").append(getComputerWinRate()).append(newline);
+        sb.append("Unfinished: ").append(getUnfinished()).append(newline);
+        sb.append("Ticks per match: ").append(getAverageTicks())
+                .append(" (min ").append(getMinTicks()).append(", max ").append(this.maxTicks).append(")").append(newline);
+        sb.append("Human goals: ");
+        appendCounts(sb, this.humanGoalCounts);
+        sb.append(newline);
+        sb.append("Computer goals: ");
+        appendCounts(sb, this.computerGoalCounts);
+        sb.append(newline);
+        sb.append("Matches per second: ").append(getMatchesPerSecond());
+
+        return sb.toString();
+    }
+
+
+
+    public int getNumMatches() { return this.numMatches; }
+    public int getHumanWins() { return this.humanWins; }
+    public int getComputerWins() { return this.computerWins; }
+    public int getUnfinished() { return this.numMatches - this.humanWins - this.computerWins; }
+    public double getHumanWinRate() { return (this.numMatches == 0) ? 0.0 : (double)this.humanWins / this.numMatches; }
+    public double getComputerWinRate() { return (this.numMatches == 0) ? 0.0 : (double)this.computerWins / this.numMatches; }
+    public long getTotalTicks() { return this.totalTicks; }
+    public double getAverageTicks() { return (this.numMatches == 0) ? 0.0 : (double)this.totalTicks / this.numMatches; }
+    public int getMinTicks() { return (this.numMatches == 0) ? 0 : this.minTicks; }
+    public int getMaxTicks() { return this.maxTicks; }
+    /**
+     * Gets how many matches ended with the human side on each number of goals.
+     * @return The counts, indexed by number of goals (a copy).
+     */
+    public int[] getHumanGoalCounts() { return this.humanGoalCounts.clone(); }
+    /**
+     * Gets how many matches ended with the computer side on each number of goals.
+     * @return The counts, indexed by number of goals (a copy).
+     */
+    public int[] getComputerGoalCounts() { return this.computerGoalCounts.clone(); }
+    public long getElapsedNanos() { return this.elapsedNanos; }
+    /**
+     * Gets the throughput of the batch.
+     * @return The number of matches played per second of wall clock time.
+     */
+    public double getMatchesPerSecond() {
+        return (this.elapsedNanos == 0) ? 0.0 : this.numMatches / (this.elapsedNanos / 1000000000.0);
+    }
+
+
+
+    /**
+     * Appends counts to the string builder in the form "0:3 1:5 ...".
+     * @param sb The string builder.
+     * @param counts The counts to append.
+     */
+    private static void appendCounts(StringBuilder sb, int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(i).append(':').append(counts[i]);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package fussball;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays lots of independent headless matches across all of the machine's
+ * cores and adds up the results. Every match has its own GameState (and so
+ * its own random number generator) and GameLogic, and every worker keeps its
+ * own results, so the workers never share anything that changes.
+ * @author Max Strange
+ */
+public class BatchSimulator {
+    private final int CHUNKS_PER_THREAD = 4;//Split the work up a bit finer than one chunk per thread to even out the load
+
+    private final int numThreads;//The number of threads to play matches on
+    private final int maxTicks;//The most ticks any one match may last
+    private final long seed;//The seed that every match's seed is drawn from
+
+    /**
+     * Constructor for a BatchSimulator that uses every core and a random seed.
+     */
+    public BatchSimulator() {
+        this(Runtime.getRuntime().availableProcessors(), HeadlessMatch.DEFAULT_MAX_TICKS,
+                new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructor.
+     * @param numThreads The number of threads to play matches on.
+     * @param maxTicks The most ticks any one match may last.
+     * @param seed The seed for the whole batch. Running the same number of
+     * matches with the same seed gives the same results, no matter how many
+     * threads are used.
+     */
+    public BatchSimulator(int numThreads, int maxTicks, long seed) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("There must be at least one thread.");
+
+        this.numThreads = numThreads;
+        this.maxTicks = maxTicks;
+        this.seed = seed;
+    }
+
+
+
+    /**
+     * Plays the given number of matches and returns the combined results.
+     * @param numMatches The number of matches to play.
+     * @return The results of all the matches.
+     * @throws InterruptedException Thrown if interrupted while waiting for the
+     * matches to finish.
+     */
+    public BatchResult run(int numMatches) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+        long start = System.nanoTime();
+
+        try {
+            //Give every match its own seed, drawn up front so that the seeds don't depend on the threads
+            SplittableRandom seeds = new SplittableRandom(this.seed);
+            long[] matchSeeds = new long[numMatches];
+            for (int i = 0; i < numMatches; i++) {
+                matchSeeds[i] = seeds.nextLong();
+            }
+            
+            //Split the matches up into roughly equal chunks
+            int numChunks = Math.max(1, Math.min(numMatches, this.numThreads * CHUNKS_PER_THREAD));
+            List<Future<BatchResult>> chunks = new ArrayList<>();
+            int firstMatch = 0;
+            for (int i = 0; i < numChunks; i++) {
+                int chunkSize = (numMatches / numChunks) + ((i < (numMatches % numChunks)) ? 1 : 0);
+                chunks.add(pool.submit(new Worker(matchSeeds, firstMatch, chunkSize, this.maxTicks)));
+                firstMatch += chunkSize;
+            }
+
+            //Add up the results
+            BatchResult total = new BatchResult(GameState.SCORE_TO_PLAY_TO);
+            for (Future<BatchResult> chunk : chunks) {
+                total.add(chunk.get());
+            }
+            total.setElapsedNanos(System.nanoTime() - start);
+
+            return total;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A simulated match failed.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+
+    /**
+     * Plays the given number of matches and prints the results.
+     * @param args The number of matches to play (optional, defaults to 1000),
+     * the number of threads to use (optional, defaults to every core) and the
+     * seed (optional, defaults to a random one).
+     * @throws InterruptedException Thrown if interrupted while playing.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int numMatches = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        int numThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+
+        BatchSimulator simulator = new BatchSimulator(numThreads, HeadlessMatch.DEFAULT_MAX_TICKS, seed);
+        System.out.println("Seed: " + seed);
+        System.out.println(simulator.run(numMatches));
+    }
+
+
+
+    /**
+     * Plays some matches one after another and keeps the results to itself.
+     */
+    private static class Worker implements Callable<BatchResult> {
+        private final long[] matchSeeds;//The seeds for every match in the batch (only read)
+        private final int firstMatch;//The index of this worker's first match
+        private final int numMatches;
+        private final int maxTicks;
+
+        public Worker(long[] matchSeeds, int firstMatch, int numMatches, int maxTicks) {
+            this.matchSeeds = matchSeeds;
+            this.firstMatch = firstMatch;
+            this.numMatches = numMatches;
+            this.maxTicks = maxTicks;
+        }
+
+        @Override
+        public BatchResult call() {
+            BatchResult result = new BatchResult(GameState.SCORE_TO_PLAY_TO);
+
+            for (int i = this.firstMatch; i < this.firstMatch + this.numMatches; i++) {
+                HeadlessMatch match = new HeadlessMatch(this.matchSeeds[i]);
+                match.play(this.maxTicks);
+                result.recordMatch(match);
+            }
+
+            return result;
+        }
+    }
+}
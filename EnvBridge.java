@@ -0,0 +1,473 @@
+package fussball;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hosts lots of FussballEnvs for a trainer running in another process. The
+ * two sides share a memory mapped file, so actions and observations go
+ * straight between them without being serialized or copied: each
+ * environment writes its observations right into the mapped file.
+ *
+ * The file is a header followed by one fixed size slot per environment. All
+ * numbers are little endian. The header is HEADER_LENGTH bytes of ints: MAGIC,
+ * VERSION, the number of environments, SLOT_LENGTH, the observation length
+ * (in floats), the number of actions (in ints), whether the bridge is serving
+ * (1) or not (0), and a stop flag that the trainer sets to 1 to shut the
+ * bridge down. Each slot is laid out like this (offsets in bytes):
+ * <pre>
+ *   0  int    request sequence number (written by the trainer)
+ *   4  int    command: COMMAND_STEP or COMMAND_RESET
+ *   8  long   seed (for COMMAND_RESET)
+ *  16  int[]  actions, one SpindleAction per spindle (for COMMAND_STEP)
+ *  64  int    response sequence number (written by the bridge)
+ *  68  float  reward
+ *  72  int    done (1 if the episode is over)
+ *  76  int    error: ERROR_NONE, or why the request wasn't done
+ *  80  float[] observation (see FussballEnv)
+ * </pre>
+ * To make a request, the trainer writes the command and its arguments, then
+ * bumps the slot's request sequence number. The bridge notices, does the
+ * command, writes the reward, done flag and observation, and then sets the
+ * response sequence number to the request's. The trainer waits for that.
+ * A request that can't be done (an unknown command, an action that isn't a
+ * SpindleAction, or a step when there is no episode going) is still
+ * answered, but with the error set, a reward of 0 and the environment and
+ * observation left as they were.
+ * The sequence numbers are written last (with release semantics) and read
+ * first (with acquire semantics), so neither side ever sees a half written
+ * request or response. The trainer has to do the same with its side of
+ * them: on x86 plain aligned reads and writes are enough, but on weaker
+ * machines (ARM, say) it needs the equivalent fences. Slots are a multiple
+ * of 64 bytes and the request and response halves are in different cache
+ * lines, so the two sides don't fight over them.
+ *
+ * Where a shared file isn't possible, the bridge can serve over a loopback
+ * socket instead. Each exchange is then the request halves of every slot
+ * (without the sequence numbers, so 24 bytes each) one after another, and
+ * the reply is the response halves (without the sequence numbers). The
+ * bytes are scattered into and gathered out of the slots directly.
+ * @author Max Strange
+ */
+public class EnvBridge {
+    public static final String DEFAULT_FILE_NAME = "fussball.env";
+    public static final int MAGIC = 0x46454e56;//"FENV"
+    public static final int VERSION = 2;
+    public static final int HEADER_LENGTH = 64;
+    public static final int COMMAND_STEP = 0;
+    public static final int COMMAND_RESET = 1;
+    public static final int ERROR_NONE = 0;
+    public static final int ERROR_BAD_COMMAND = 1;//The command isn't COMMAND_STEP or COMMAND_RESET
+    public static final int ERROR_BAD_ACTION = 2;//An action isn't a SpindleAction
+    public static final int ERROR_EPISODE_OVER = 3;//A step before the first reset or after the episode was done
+
+    //Where everything is in the header
+    private static final int NUM_ENVS = 8;
+    private static final int SLOT = 12;
+    private static final int OBSERVATION = 16;
+    private static final int ACTIONS = 20;
+    private static final int SERVING = 24;
+    private static final int STOP = 28;
+
+    //Where everything is in a slot
+    private static final int REQUEST_SEQUENCE = 0;
+    private static final int REQUEST_COMMAND = 4;
+    private static final int REQUEST_SEED = 8;
+    private static final int REQUEST_ACTIONS = 16;
+    private static final int REQUEST_LENGTH = REQUEST_ACTIONS + (FussballEnv.NUM_ACTIONS * 4) - REQUEST_COMMAND;//Without the sequence number
+    private static final int RESPONSE_SEQUENCE = 64;//In the next cache line
+    private static final int RESPONSE_REWARD = 68;
+    private static final int RESPONSE_DONE = 72;
+    private static final int RESPONSE_ERROR = 76;
+    private static final int RESPONSE_OBSERVATION = 80;
+    private static final int RESPONSE_LENGTH = RESPONSE_OBSERVATION + (FussballEnv.OBSERVATION_LENGTH * 4) - RESPONSE_REWARD;
+    public static final int SLOT_LENGTH = ((RESPONSE_OBSERVATION + (FussballEnv.OBSERVATION_LENGTH * 4) + 63) / 64) * 64;
+
+    /*
+    Reads and writes the ints of the shared file with memory ordering (which
+    plain ByteBuffer gets and puts don't have), for the sequence numbers and
+    flags that the trainer's process watches or sets.
+    */
+    private static final VarHandle SHARED_INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    //How long a serving thread waits between looks at its slots when the trainer is quiet
+    private final int SPIN_POLLS = 1000;//Look again straight away this many times
+    private final int YIELD_POLLS = 1000;//Then give up the core this many times
+    private final long PARK_NANOS = 50000L;//Then sleep this long between looks
+
+    private final FussballEnv[] envs;
+    private final int[][] actions;//Each environment's actions, read out of its slot
+    private volatile boolean stopped = false;
+    private volatile ServerSocketChannel server = null;//The socket being served on, so that stop() can close it
+    private volatile SocketChannel client = null;//The trainer connected to it, likewise
+
+    /**
+     * Constructor.
+     * @param numEnvs The number of environments to host. Each is the random
+     * GameAI's opponent (see FussballEnv).
+     */
+    public EnvBridge(int numEnvs) {
+        if (numEnvs < 1)
+            throw new IllegalArgumentException("There must be at least one environment.");
+
+        this.envs = new FussballEnv[numEnvs];
+        this.actions = new int[numEnvs][FussballEnv.NUM_ACTIONS];
+        for (int k = 0; k < numEnvs; k++) {
+            this.envs[k] = new FussballEnv();
+        }
+    }
+
+
+
+    /**
+     * Serves the environments through a shared memory mapped file until the
+     * trainer sets the stop flag or stop() is called. The file is made (or
+     * remade) the right size, and its header is written before serving.
+     * @param fileName The file to share.
+     * @param numThreads The number of threads to serve on. Each thread looks
+     * after its own share of the slots.
+     * @throws IOException Thrown if the file can't be made or mapped.
+     * @throws InterruptedException Thrown if interrupted while serving.
+     */
+    public void serveSharedMemory(String fileName, int numThreads) throws IOException, InterruptedException {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("There must be at least one thread.");
+
+        long length = HEADER_LENGTH + ((long)this.envs.length * SLOT_LENGTH);
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+                FileChannel channel = file.getChannel()) {
+            file.setLength(0);//Start from all zeros, so no slot has a request waiting
+            file.setLength(length);
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(map);
+
+            //Each thread gets its own share of the slots (and its own views of the map)
+            int n = Math.min(numThreads, this.envs.length);
+            Thread[] threads = new Thread[n];
+            int first = 0;
+            for (int i = 0; i < n; i++) {
+                int size = (this.envs.length / n) + ((i < (this.envs.length % n)) ? 1 : 0);
+                threads[i] = new Thread(new SlotServer(map.duplicate().order(ByteOrder.LITTLE_ENDIAN), first, size),
+                        "Bridge " + i);
+                threads[i].setDaemon(true);
+                threads[i].start();
+                first += size;
+            }
+
+            SHARED_INT.setRelease(map, SERVING, 1);
+            try {
+                for (Thread t : threads) {
+                    t.join();
+                }
+            } finally {
+                this.stopped = true;
+                SHARED_INT.setRelease(map, SERVING, 0);
+                map.force();
+            }
+        }
+    }
+
+    /**
+     * Serves the environments over a loopback socket, one trainer connection
+     * at a time, until stop() is called. Stopping closes the socket and the
+     * trainer's connection, so it takes effect straight away even if this is
+     * waiting for a trainer or a request.
+     * @param port The port to listen on (0 for any free one).
+     * @param listening Told the port that is being listened on, once it is.
+     * Can be null.
+     * @throws IOException Thrown if the socket can't be opened.
+     */
+    public void serveSocket(int port, PortListener listening) throws IOException {
+        ByteBuffer slots = ByteBuffer.allocateDirect(this.envs.length * SLOT_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer[] requests = new ByteBuffer[this.envs.length];
+        ByteBuffer[] responses = new ByteBuffer[this.envs.length];
+        FloatBuffer[] observations = new FloatBuffer[this.envs.length];
+        for (int k = 0; k < this.envs.length; k++) {
+            requests[k] = region(slots, (k * SLOT_LENGTH) + REQUEST_COMMAND, REQUEST_LENGTH);
+            responses[k] = region(slots, (k * SLOT_LENGTH) + RESPONSE_REWARD, RESPONSE_LENGTH);
+            observations[k] = observationView(slots, k * SLOT_LENGTH);
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            this.server = server;
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            if (listening != null)
+                listening.listening(((InetSocketAddress)server.getLocalAddress()).getPort());
+
+            //Check for stopping after each channel is published, so that stop() either sees it or is seen here
+            while (!this.stopped) {
+                try (SocketChannel client = server.accept()) {
+                    this.client = client;
+                    if (this.stopped)
+                        break;
+                    client.socket().setTcpNoDelay(true);
+                    while (readFully(client, requests)) {
+                        for (int k = 0; k < this.envs.length; k++) {
+                            handle(slots, k * SLOT_LENGTH, observations[k], k);
+                        }
+                        writeFully(client, responses);
+                    }
+                }
+            }
+        } catch (ClosedChannelException e) {
+            if (!this.stopped)
+                throw e;//Otherwise stop() closed the socket to wake this up, which is a clean way out
+        } finally {
+            this.server = null;
+            this.client = null;
+        }
+    }
+
+    /**
+     * Stops serving. A socket bridge's socket and trainer connection are
+     * closed, so that it doesn't wait for the trainer to go first.
+     */
+    public void stop() {
+        this.stopped = true;
+        closeQuietly(this.client);
+        closeQuietly(this.server);
+    }
+
+    public int getNumEnvs() { return this.envs.length; }
+
+
+
+    /**
+     * Hosts environments for a trainer.
+     * @param args The number of environments (optional, defaults to 64), then
+     * either the file to share (optional, defaults to DEFAULT_FILE_NAME) or
+     * "port:" and the port to serve a loopback socket on, and the number of
+     * threads to serve the file on (optional, defaults to every core).
+     * @throws IOException Thrown if the file or socket can't be opened.
+     * @throws InterruptedException Thrown if interrupted while serving.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int numEnvs = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+        String where = (args.length > 1) ? args[1] : DEFAULT_FILE_NAME;
+        int numThreads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        EnvBridge bridge = new EnvBridge(numEnvs);
+        if (where.startsWith("port:")) {
+            bridge.serveSocket(Integer.parseInt(where.substring(5)), new PortListener() {
+                @Override
+                public void listening(int port) {
+                    System.out.println("Serving " + numEnvs + " environments on port " + port);
+                }
+            });
+        } else {
+            System.out.println("Serving " + numEnvs + " environments through " + where);
+            bridge.serveSharedMemory(where, numThreads);
+        }
+    }
+
+
+
+    /**
+     * Does the request in a slot and writes the response into it (but not
+     * the sequence numbers). A request that can't be done is answered with
+     * an error instead of being done.
+     * @param slots The slots.
+     * @param slot Where the slot starts.
+     * @param observation A view of the slot's observation.
+     * @param k The slot's environment.
+     */
+    private void handle(ByteBuffer slots, int slot, FloatBuffer observation, int k) {
+        FussballEnv env = this.envs[k];
+        float reward = 0.0f;
+        int error = ERROR_NONE;
+        int command = slots.getInt(slot + REQUEST_COMMAND);
+        if (command == COMMAND_RESET) {
+            env.reset(slots.getLong(slot + REQUEST_SEED), observation, 0);
+        } else if (command != COMMAND_STEP) {
+            error = ERROR_BAD_COMMAND;
+        } else if (env.isDone()) {
+            error = ERROR_EPISODE_OVER;
+        } else {
+            //Check every action before stepping - the environment would throw, which would take this thread down with it
+            int[] a = this.actions[k];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = slots.getInt(slot + REQUEST_ACTIONS + (i * 4));
+                if ((a[i] < 0) || (a[i] >= SpindleAction.NUM_ACTIONS))
+                    error = ERROR_BAD_ACTION;
+            }
+            if (error == ERROR_NONE)
+                reward = env.step(a, 0, observation, 0);
+        }
+
+        slots.putFloat(slot + RESPONSE_REWARD, reward);
+        slots.putInt(slot + RESPONSE_DONE, env.isDone() ? 1 : 0);
+        slots.putInt(slot + RESPONSE_ERROR, error);
+    }
+
+    /**
+     * Writes the header of the shared file.
+     * @param map The mapped file.
+     */
+    private void writeHeader(ByteBuffer map) {
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putInt(NUM_ENVS, this.envs.length);
+        map.putInt(SLOT, SLOT_LENGTH);
+        map.putInt(OBSERVATION, FussballEnv.OBSERVATION_LENGTH);
+        map.putInt(ACTIONS, FussballEnv.NUM_ACTIONS);
+        map.putInt(SERVING, 0);
+        map.putInt(STOP, 0);
+    }
+
+    /**
+     * Closes a channel, if there is one, ignoring any trouble doing so.
+     * @param channel The channel (can be null).
+     */
+    private static void closeQuietly(Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //It's only being closed to stop serving, so there's nothing more to do
+            }
+        }
+    }
+
+    /**
+     * Makes a view of part of a buffer.
+     * @param buffer The buffer.
+     * @param offset Where the part starts.
+     * @param length How long the part is.
+     * @return The view (in the buffer's byte order).
+     */
+    private static ByteBuffer region(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer b = buffer.duplicate();
+        b.position(offset);
+        b.limit(offset + length);
+        return b.slice().order(buffer.order());
+    }
+
+    /**
+     * Makes a view of a slot's observation, for the environment to write into.
+     * @param slots The slots.
+     * @param slot Where the slot starts.
+     * @return The view.
+     */
+    private static FloatBuffer observationView(ByteBuffer slots, int slot) {
+        return region(slots, slot + RESPONSE_OBSERVATION, FussballEnv.OBSERVATION_LENGTH * 4).asFloatBuffer();
+    }
+
+    /**
+     * Reads a whole exchange from the trainer into the slots.
+     * @param client The trainer's connection.
+     * @param requests The request half of each slot.
+     * @return Whether there was one (false if the trainer disconnected).
+     * @throws IOException Thrown if the connection fails part way through.
+     */
+    private static boolean readFully(SocketChannel client, ByteBuffer[] requests) throws IOException {
+        for (ByteBuffer b : requests) {
+            b.clear();
+        }
+
+        boolean started = false;
+        ByteBuffer last = requests[requests.length - 1];
+        while (last.hasRemaining()) {
+            if (client.read(requests) < 0) {
+                if (started)
+                    throw new EOFException("The trainer disconnected part way through a request.");
+                return false;
+            }
+            started = true;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a whole exchange's responses back to the trainer.
+     * @param client The trainer's connection.
+     * @param responses The response half of each slot.
+     * @throws IOException Thrown if the connection fails.
+     */
+    private static void writeFully(SocketChannel client, ByteBuffer[] responses) throws IOException {
+        for (ByteBuffer b : responses) {
+            b.clear();
+        }
+
+        ByteBuffer last = responses[responses.length - 1];
+        while (last.hasRemaining()) {
+            client.write(responses);
+        }
+    }
+
+    /**
+     * Told which port a socket bridge is listening on.
+     */
+    public interface PortListener {
+        void listening(int port);
+    }
+
+    /**
+     * Looks after some of the slots of the shared file: keeps looking for new
+     * requests in them and answers them.
+     */
+    private class SlotServer implements Runnable {
+        private final ByteBuffer map;//This thread's own view of the mapped file
+        private final int first;//The first slot to look after
+        private final int size;//The number of slots to look after
+        private final FloatBuffer[] observations;//A view of each slot's observation
+        private final int[] answered;//The last request sequence number answered in each slot
+
+        public SlotServer(ByteBuffer map, int first, int size) {
+            this.map = map;
+            this.first = first;
+            this.size = size;
+            this.observations = new FloatBuffer[size];
+            this.answered = new int[size];
+            for (int i = 0; i < size; i++) {
+                this.observations[i] = observationView(map, HEADER_LENGTH + ((first + i) * SLOT_LENGTH));
+            }
+        }
+
+        @Override
+        public void run() {
+            int idlePolls = 0;
+            while (!EnvBridge.this.stopped) {
+                boolean busy = false;
+                for (int i = 0; i < this.size; i++) {
+                    int slot = HEADER_LENGTH + ((this.first + i) * SLOT_LENGTH);
+                    int sequence = (int)SHARED_INT.getAcquire(this.map, slot + REQUEST_SEQUENCE);//The request can't be read before this
+                    if (sequence == this.answered[i])
+                        continue;
+
+                    handle(this.map, slot, this.observations[i], this.first + i);
+                    SHARED_INT.setRelease(this.map, slot + RESPONSE_SEQUENCE, sequence);//Nor this written before the response
+                    this.answered[i] = sequence;
+                    busy = true;
+                }
+
+                if (busy) {
+                    idlePolls = 0;
+                } else {
+                    idlePolls++;
+                    if ((int)SHARED_INT.getAcquire(this.map, STOP) != 0)
+                        EnvBridge.this.stopped = true;
+                    else if (idlePolls > SPIN_POLLS + YIELD_POLLS)
+                        LockSupport.parkNanos(PARK_NANOS);
+                    else if (idlePolls > SPIN_POLLS)
+                        Thread.yield();
+                }
+            }
+        }
+    }
+}
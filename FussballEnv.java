@@ -0,0 +1,247 @@
+package fussball;
+
+import java.nio.FloatBuffer;
+
+/**
+ * The game as an environment to train agents in, in the style of a gym: reset
+ * it to start an episode (a match), then step it with the agent's actions
+ * and get back a reward and the next observation, until it is done.
+ *
+ * The agent plays the human's side of the table against an AI on the
+ * computer's side (the random GameAI unless it is given another). Each step
+ * is one AI turn: the agent's actions (one SpindleAction for each of its
+ * spindles) are done, then the game is played on for as many ticks as there
+ * are between the AI's turns. The reward is the number of goals the agent
+ * scored in the step minus the number it let in. The episode is done when
+ * somebody wins, or after a tick limit so that a stuck ball can't make an
+ * episode go on forever.
+ *
+ * Observations are written into a float[] or a FloatBuffer that the caller
+ * hands in, so stepping allocates nothing (resetting does - it starts a new
+ * match). An observation is OBSERVATION_LENGTH floats: the ball's x, y,
+ * velocity in the x and y and whether it is off the table (1) or not (0),
+ * then for every player on the table (in GameState.getAllPlayers() order)
+ * its y, orientation (Orientation.ordinal()) and momentum. Positions are
+ * from the center of the table, in half widths and half heights of the
+ * table, velocities are in half widths per tick, and momentums are a
+ * fraction of the most a player can have.
+ * @author Max Strange
+ */
+public class FussballEnv {
+    public static final int NUM_ACTIONS = 3;//The number of actions per step (one for each of the human's spindles)
+    public static final int DEFAULT_MAX_TICKS = 20000;//The most ticks an episode lasts unless it is told otherwise
+    private static final int BALL_OBSERVATIONS = 5;//x, y, x velocity, y velocity, off the table
+    private static final int PLAYER_OBSERVATIONS = 3;//y, orientation, momentum
+    private static final int NUMBER_OF_PLAYERS = 18;//The number of players on the whole table (3, 5 and 1 on each side)
+    public static final int OBSERVATION_LENGTH = BALL_OBSERVATIONS + (NUMBER_OF_PLAYERS * PLAYER_OBSERVATIONS);
+
+    private final AI opponent;//Plays the computer's side
+    private final int maxTicks;//The most ticks an episode may last
+    private GameState state = null;
+    private GameLogic logic = null;
+    private int numTicks = 0;//The number of ticks played so far this episode
+    private boolean done = true;//Whether the episode is over (there isn't one until the first reset)
+
+    //Worked out from the table in reset()
+    private double centerX;
+    private double centerY;
+    private double halfWidth;
+    private double halfHeight;
+
+    /**
+     * Constructor for an environment with the random GameAI as the opponent.
+     */
+    public FussballEnv() {
+        this(new GameAI(false), DEFAULT_MAX_TICKS);
+    }
+
+    /**
+     * Constructor.
+     * @param opponent The AI to play the computer's side with. It must not be
+     * shared with another environment.
+     * @param maxTicks The most ticks an episode may last.
+     */
+    public FussballEnv(AI opponent, int maxTicks) {
+        if (maxTicks < 1)
+            throw new IllegalArgumentException("An episode must last at least one tick.");
+
+        this.opponent = opponent;
+        this.maxTicks = maxTicks;
+    }
+
+
+
+    /**
+     * Starts a new episode.
+     * @param seed The seed for the episode's match. The same seed and the
+     * same actions always play out the same way (if the opponent doesn't
+     * depend on the clock, as a MonteCarloAI does).
+     * @param observation Where to write the first observation.
+     * @param offset Where in the array the observation starts.
+     */
+    public void reset(long seed, float[] observation, int offset) {
+        startMatch(seed);
+        writeObservation(observation, offset);
+    }
+
+    /**
+     * Starts a new episode.
+     * @param seed The seed for the episode's match.
+     * @param observation Where to write the first observation.
+     * @param index Where in the buffer the observation starts (the buffer's
+     * position isn't used or changed).
+     */
+    public void reset(long seed, FloatBuffer observation, int index) {
+        startMatch(seed);
+        writeObservation(observation, index);
+    }
+
+    /**
+     * Does the agent's actions and plays on until its next turn.
+     * @param actions The SpindleAction for each of the human's spindles (in
+     * GameState.getHumanSpindles() order).
+     * @param actionOffset Where in the array the actions start.
+     * @param observation Where to write the next observation.
+     * @param offset Where in the array the observation starts.
+     * @return The reward: the goals the agent scored minus the goals it let in.
+     */
+    public float step(int[] actions, int actionOffset, float[] observation, int offset) {
+        float reward = play(actions, actionOffset);
+        writeObservation(observation, offset);
+        return reward;
+    }
+
+    /**
+     * Does the agent's actions and plays on until its next turn.
+     * @param actions The SpindleAction for each of the human's spindles.
+     * @param actionOffset Where in the array the actions start.
+     * @param observation Where to write the next observation.
+     * @param index Where in the buffer the observation starts (the buffer's
+     * position isn't used or changed).
+     * @return The reward: the goals the agent scored minus the goals it let in.
+     */
+    public float step(int[] actions, int actionOffset, FloatBuffer observation, int index) {
+        float reward = play(actions, actionOffset);
+        writeObservation(observation, index);
+        return reward;
+    }
+
+    /**
+     * Gets whether the episode is over, so that the environment has to be
+     * reset before it is stepped again.
+     * @return Whether the episode is over.
+     */
+    public boolean isDone() { return this.done; }
+    /**
+     * Gets the state of the episode's match. Don't change it.
+     * @return The state, or null before the first reset.
+     */
+    public GameState getState() { return this.state; }
+    public int getNumTicks() { return this.numTicks; }
+
+
+
+    /**
+     * Sets up a new match.
+     * @param seed The seed for the match.
+     */
+    private void startMatch(long seed) {
+        this.state = new GameState(seed);
+        this.state.initialize(HeadlessMatch.DEFAULT_WIDTH, HeadlessMatch.DEFAULT_HEIGHT);
+        this.logic = new GameLogic(false, this.opponent, null);
+        this.logic.initialize(this.state);
+        this.numTicks = 0;
+        this.done = false;
+        if (this.state.getPlayerRegistry().size() != NUMBER_OF_PLAYERS)
+            throw new IllegalStateException("The table doesn't have the number of players the observations are laid out for.");
+
+        Table table = this.state.getTable();
+        this.centerX = table.getCenterX();
+        this.centerY = table.getCenterY();
+        this.halfWidth = this.centerX - table.getLeftWall().getX();
+        this.halfHeight = this.centerY - table.getTopWall().getY();
+    }
+
+    /**
+     * Does the agent's actions and plays until its next turn (or the end).
+     * @param actions The SpindleAction for each of the human's spindles.
+     * @param offset Where in the array the actions start.
+     * @return The reward.
+     * @throws IllegalArgumentException Thrown (before anything is done) if an
+     * action isn't a SpindleAction.
+     */
+    private float play(int[] actions, int offset) {
+        if (this.done)
+            throw new IllegalStateException("The episode is over - reset the environment first.");
+
+        //Check every action before doing any, so a bad one doesn't leave the step half done
+        Spindle[] spindles = this.state.getHumanSpindles();
+        for (int i = 0; i < spindles.length; i++) {
+            int action = actions[offset + i];
+            if ((action < 0) || (action >= SpindleAction.NUM_ACTIONS))
+                throw new IllegalArgumentException("There is no action " + action);
+        }
+        for (int i = 0; i < spindles.length; i++) {
+            SpindleAction.apply(spindles[i], actions[offset + i], true);
+        }
+
+        int lead = this.state.getHumanScore() - this.state.getComputerScore();
+        int ticks = this.logic.getAITurnTicks();
+        for (int t = 0; (t < ticks) && !this.state.gameIsOver(); t++) {
+            this.numTicks++;
+            this.logic.respondToTimerTick(this.numTicks);
+        }
+
+        this.done = this.state.gameIsOver() || (this.numTicks >= this.maxTicks);
+        return (this.state.getHumanScore() - this.state.getComputerScore()) - lead;
+    }
+
+    /**
+     * Writes the current observation into an array.
+     * @param o The array.
+     * @param offset Where in the array the observation starts.
+     */
+    private void writeObservation(float[] o, int offset) {
+        Ball ball = this.state.getBall();
+        o[offset] = (float)((ball.getPreciseX() - this.centerX) / this.halfWidth);
+        o[offset + 1] = (float)((ball.getPreciseY() - this.centerY) / this.halfHeight);
+        o[offset + 2] = (float)(ball.getVelocityX() / this.halfWidth);
+        o[offset + 3] = (float)(ball.getVelocityY() / this.halfWidth);
+        o[offset + 4] = ball.isOffTable() ? 1.0f : 0.0f;
+
+        PlayerRegistry players = this.state.getPlayerRegistry();
+        double maxMomentum = players.getMaxMomentum();
+        int i = offset + BALL_OBSERVATIONS;
+        for (int id = 0; id < NUMBER_OF_PLAYERS; id++) {
+            o[i] = (float)((players.getY(id) - this.centerY) / this.halfHeight);
+            o[i + 1] = players.getOrientation(id).ordinal();
+            o[i + 2] = (float)(players.getMomentum(id) / maxMomentum);
+            i += PLAYER_OBSERVATIONS;
+        }
+    }
+
+    /**
+     * Writes the current observation into a buffer, without using or
+     * changing its position.
+     * @param o The buffer.
+     * @param index Where in the buffer the observation starts.
+     */
+    private void writeObservation(FloatBuffer o, int index) {
+        Ball ball = this.state.getBall();
+        o.put(index, (float)((ball.getPreciseX() - this.centerX) / this.halfWidth));
+        o.put(index + 1, (float)((ball.getPreciseY() - this.centerY) / this.halfHeight));
+        o.put(index + 2, (float)(ball.getVelocityX() / this.halfWidth));
+        o.put(index + 3, (float)(ball.getVelocityY() / this.halfWidth));
+        o.put(index + 4, ball.isOffTable() ? 1.0f : 0.0f);
+
+        PlayerRegistry players = this.state.getPlayerRegistry();
+        double maxMomentum = players.getMaxMomentum();
+        int i = index + BALL_OBSERVATIONS;
+        for (int id = 0; id < NUMBER_OF_PLAYERS; id++) {
+            o.put(i, (float)((players.getY(id) - this.centerY) / this.halfHeight));
+            o.put(i + 1, players.getOrientation(id).ordinal());
+            o.put(i + 2, (float)(players.getMomentum(id) / maxMomentum));
+            i += PLAYER_OBSERVATIONS;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package fussball;
 
+import java.io.IOException;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
@@ -8,10 +9,29 @@ import javax.swing.JOptionPane;
  * @author Max Strange
  */
 public class Fussball_Main {
+    /**
+     * The number of simulation steps in each tick of the game. The game always
+     * plays at the same speed - more steps just make the physics smoother.
+     * 6 steps of a 50 ms tick is a 120 Hz simulation.
+     */
+    private static final int STEPS_PER_TICK = 6;
+    /**
+     * How many ticks the computer's AI has to decide in when it runs on a
+     * thread of its own ("-async"). One tick is 50 ms, which is plenty for
+     * every AI there is, but a slow machine still can't hold up the game.
+     */
+    private static final int AI_DEADLINE_TICKS = 1;
 
     /**
      * Main entry point for the program.
-     * @param args the command line arguments (not used)
+     * @param args the command line arguments ("-active" to draw the game on
+     * a render thread of its own instead of through Swing's repaints,
+     * "-intercept", "-montecarlo" or "-policy" to play against the
+     * InterceptAI, the MonteCarloAI or a PolicyAI playing from
+     * PolicyTable.DEFAULT_FILE_NAME instead of the random one, "-async"
+     * to run the computer's AI on a thread of its own instead of in the tick,
+     * and "-tuned" to play with the TuningParameters in
+     * TuningParameters.DEFAULT_FILE_NAME, as found by a ParameterTuner)
      */
     public static void main(String[] args) {
         String title = "Directions for play";
@@ -31,8 +51,29 @@ public class Fussball_Main {
             invert = true;
 
 
+        boolean activeRendering = false;
+        int deadlineTicks = 0;
+        TuningParameters parameters = null;
+        AI computerAI = new GameAI();
+        for (String arg : args) {
+            if (arg.equals("-active"))
+                activeRendering = true;
+            else if (arg.equals("-intercept"))
+                computerAI = new InterceptAI(false);
+            else if (arg.equals("-montecarlo"))
+                computerAI = new MonteCarloAI(false);
+            else if (arg.equals("-policy"))
+                computerAI = loadPolicyAI(computerAI);
+            else if (arg.equals("-async"))
+                deadlineTicks = AI_DEADLINE_TICKS;
+            else if (arg.equals("-tuned"))
+                parameters = loadParameters();
+        }
+        if ((parameters != null) && (computerAI instanceof GameAI))
+            computerAI = parameters.makeAI(false);
+
         //Set up the GUI
-        AppWindow gui = new AppWindow();
+        AppWindow gui = new AppWindow(activeRendering);
         
         gui.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 	gui.setSize(1000, 1000);
@@ -41,8 +82,43 @@ public class Fussball_Main {
 
         //Start up the program back-end
         GameState state = new GameState();
-        GameLogic logic = new GameLogic(invert);
+        state.setStepsPerTick(STEPS_PER_TICK);
+        GameLogic logic = new GameLogic(invert, computerAI, null, deadlineTicks);
         gui.initialize(state, logic);
+        if (parameters != null) {
+            parameters.applyTo(state);
+            parameters.applyTo(logic);
+        }
         gui.start();
     }
+    
+    /**
+     * Loads the TuningParameters from the default file.
+     * @return The parameters, or null (to play with the usual ones) if they
+     * can't be loaded.
+     */
+    private static TuningParameters loadParameters() {
+        try {
+            return TuningParameters.load(TuningParameters.DEFAULT_FILE_NAME);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Couldn't load the tuned parameters (" + e.getMessage()
+                    + "), so the game will play as usual. Find some with ParameterTuner.");
+            return null;
+        }
+    }
+    
+    /**
+     * Loads a PolicyAI from the default policy table file.
+     * @param fallback The AI to play with if the table can't be loaded.
+     * @return The PolicyAI, or the fallback if the table can't be loaded.
+     */
+    private static AI loadPolicyAI(AI fallback) {
+        try {
+            return new PolicyAI(new PolicyTable(PolicyTable.DEFAULT_FILE_NAME));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Couldn't load the policy table (" + e.getMessage()
+                    + "), so the computer will play randomly. Make one with PolicyTableGenerator.");
+            return fallback;
+        }
+    }
 }
@@ -1,32 +1,82 @@
 package fussball;
 
-import java.util.Random;
-
 /**
  *The "AI" for the game - the computer essentially just randomly flails around.
  * @author Max Strange
  */
-public class GameAI {
+public class GameAI implements AI {
+    static final int DEFAULT_ROTATE_TOWARDS = 50;//Out of 99 turns, about how many rotate towards the opponent's goal
+    static final int DEFAULT_ROTATE_AWAY = 75;//Out of 99 turns, about how many rotate towards or away from it
+    
+    private final boolean human;//Whether this AI plays the human's side (otherwise the computer's)
+    private final int rotateTowards;//Rotate towards the opponent's goal if the roll (out of 99) is below this
+    private final int rotateAway;//Otherwise, rotate away from it if the roll is below this
+    
+    /**
+     * Constructor for an AI that plays the computer's side.
+     */
     public GameAI() {
-        
+        this(false);
+    }
+    
+    /**
+     * Constructor.
+     * @param human If true, the AI plays the human's side of the table (for
+     * instance, to play both sides in a simulated match). Otherwise, it plays
+     * the computer's side.
+     */
+    public GameAI(boolean human) {
+        this(human, DEFAULT_ROTATE_TOWARDS, DEFAULT_ROTATE_AWAY);
     }
     
     /**
-     * Does the computer's moves.
+     * Constructor for an AI that rotates more or less often than usual.
+     * @param human If true, the AI plays the human's side of the table.
+     * Otherwise, it plays the computer's side.
+     * @param rotateTowards Each turn, each spindle rolls a number out of 99
+     * and rotates towards the opponent's goal if it is below this.
+     * @param rotateAway Otherwise, the spindle rotates away from the
+     * opponent's goal if the roll is below this (and doesn't rotate at all if
+     * it isn't).
+     */
+    public GameAI(boolean human, int rotateTowards, int rotateAway) {
+        this.human = human;
+        this.rotateTowards = rotateTowards;
+        this.rotateAway = Math.max(rotateTowards, rotateAway);
+    }
+    
+    /**
+     * Does the moves for this AI's side.
+     * @param state The state to update according to what the AI ends up doing.
+     */
+    @Override
+    public void doMoves(GameState state) {
+        if (this.human)
+            doMoves(state, state.getHumanSpindles(), true);
+        else
+            doMoves(state, state.getComputerSpindles(), false);
+    }
+    
+    
+    
+    /**
+     * Does the moves for the given spindles.
      * @param state The state to update according to what the computer ends
      * up doing.
+     * @param spindles The spindles to move.
+     * @param towardsLeft If true, the spindles kick towards the left goal
+     * (the human's direction of play). Otherwise, towards the right goal.
      */
-    public static void doMoves(GameState state) {
-        Random r = new Random();
-        Spindle[] spindles = state.getComputerSpindles();
+    private void doMoves(GameState state, Spindle[] spindles, boolean towardsLeft) {
+        GameRandom r = state.getRandom();
 
         //Decide if the spindle should rotate via a random method - skew the distribution towards rotating towards opponent's goal
         for (Spindle s : spindles) {
             int i = r.nextInt(99);
-            if (i < 50)
-                s.rotate(false);//rotate counter clockwise
-            else if (i < 75)
-                s.rotate(true);//rotate clockwise
+            if (i < this.rotateTowards)
+                s.rotate(towardsLeft);//rotate towards the opponent's goal
+            else if (i < this.rotateAway)
+                s.rotate(!towardsLeft);//rotate away from the opponent's goal
             //Otherwise, don't rotate
         }
         
@@ -35,9 +85,9 @@ public class GameAI {
         boolean moveIfUnclear = r.nextBoolean();
         boolean directionToMoveIfUnclear = r.nextBoolean();
         for (Spindle s : spindles) {
-            if (ball.getLocation().y > s.getBottomPlayer().getLocation().y)
+            if (ball.getY() > s.getBottomPlayer().getY())
                 s.move(false);//if the ball is below the bottom player, move the spindle down
-            else if (ball.getLocation().y < s.getTopPlayer().getLocation().y)
+            else if (ball.getY() < s.getTopPlayer().getY())
                 s.move(true);//If the ball is above the top player, move the spindle up
             else if (moveIfUnclear)
                 s.move(directionToMoveIfUnclear);//If not clear what direction to move, maybe move randomly
@@ -9,15 +9,64 @@ import java.awt.event.KeyEvent;
  * @author Max Strange
  */
 public class GameLogic {
+    static final int DEFAULT_AI_TURN_TICKS = 5;//Don't do the computer every moment - that's too fast
+    private final int INPUT_CAPACITY = 256;//The most key events that can be waiting for the next tick
+    
     private GameState state = null;//The state of the game
+    private final InputQueue input = new InputQueue(INPUT_CAPACITY);//Key events waiting for the next tick
+    private final LatencyTracker latency = new LatencyTracker();//Measures how long key presses take to show up
     private final boolean invert;
+    private final AI computerAI;//Plays the computer's side
+    private final AI humanAI;//Plays the human's side, or null if a person is playing it
+    private final AIWorker computerWorker;//Runs the computer's AI on a thread of its own, or null to run it in the tick
+    private final AIWorker humanWorker;//Runs the human's AI on a thread of its own, or null
+    private int aiTurnTicks = DEFAULT_AI_TURN_TICKS;//The number of ticks between the AIs' turns
     
     /**
      * Constructor for the GameLogic class.
      * @param invert Whether or not to invert the left/right arrow keys.
      */
     public GameLogic(boolean invert) {
+        this(invert, false);
+    }
+    
+    /**
+     * Constructor for the GameLogic class.
+     * @param invert Whether or not to invert the left/right arrow keys.
+     * @param autoplay If true, the AI plays the human's spindles as well as
+     * the computer's (AI versus AI).
+     */
+    public GameLogic(boolean invert, boolean autoplay) {
+        this(invert, new GameAI(false), autoplay ? new GameAI(true) : null);
+    }
+    
+    /**
+     * Constructor for the GameLogic class.
+     * @param invert Whether or not to invert the left/right arrow keys.
+     * @param computerAI The AI to play the computer's side with.
+     * @param humanAI The AI to play the human's side with, or null to leave
+     * it to the person at the keyboard.
+     */
+    public GameLogic(boolean invert, AI computerAI, AI humanAI) {
+        this(invert, computerAI, humanAI, 0);
+    }
+    
+    /**
+     * Constructor for the GameLogic class.
+     * @param invert Whether or not to invert the left/right arrow keys.
+     * @param computerAI The AI to play the computer's side with.
+     * @param humanAI The AI to play the human's side with, or null to leave
+     * it to the person at the keyboard.
+     * @param deadlineTicks If more than 0, each AI runs on a thread of its own
+     * (see AIWorker) and has this many ticks to decide in. Otherwise, the AIs
+     * decide during the tick, however long they take.
+     */
+    public GameLogic(boolean invert, AI computerAI, AI humanAI, int deadlineTicks) {
         this.invert = invert;
+        this.computerAI = computerAI;
+        this.humanAI = humanAI;
+        this.computerWorker = (deadlineTicks > 0) ? new AIWorker(computerAI, false, deadlineTicks) : null;
+        this.humanWorker = ((deadlineTicks > 0) && (humanAI != null)) ? new AIWorker(humanAI, true, deadlineTicks) : null;
     }
     
     /**
@@ -31,13 +80,128 @@ public class GameLogic {
     }
     
     /**
-     * Handles the given event by checking if it is valid user input, and then
-     * doing what the user wanted to do.
+     * Queues up the given event, to be handled at the start of the next tick.
+     * Never waits. Only call this from one thread (the event dispatch thread).
      * @param k The event in question.
      */
     public void handleKeyPressed(KeyEvent k) {
+        this.input.offer(k.getKeyCode(), true, System.nanoTime());
+    }
+    
+    /**
+     * Queues up the given event, to be handled at the start of the next tick.
+     * Never waits. Only call this from one thread (the event dispatch thread).
+     * @param k The event in question.
+     */
+    public void handleKeyReleased(KeyEvent k) {
+        this.input.offer(k.getKeyCode(), false, System.nanoTime());
+    }
+    
+    /**
+     * Update the game because of a timer event. Runs all of the tick's
+     * simulation steps at once.
+     * @param numTicks the number of times the timer has ticked so far.
+     */
+    public void respondToTimerTick(int numTicks) {
+        int stepsPerTick = this.state.getStepsPerTick();
+        int firstStep = ((numTicks - 1) * stepsPerTick) + 1;
+        
+        for (int step = firstStep; step < firstStep + stepsPerTick; step++) {
+            respondToSimulationStep(step);
+        }
+    }
+    
+    /**
+     * Update the game by one simulation step. A tick is made up of
+     * GameState.getStepsPerTick() steps - the physics happens every step, and
+     * everything that counts in ticks happens on the first step of each tick.
+     * @param numSteps the number of steps simulated so far (including this one).
+     */
+    public void respondToSimulationStep(int numSteps) {
+        int stepsPerTick = this.state.getStepsPerTick();
+        boolean startOfTick = ((numSteps - 1) % stepsPerTick) == 0;
+        int numTicks = ((numSteps - 1) / stepsPerTick) + 1;
+        
+        if (startOfTick) {
+            this.state.incrementElapsedTicks();//Keep track of the time in ticks
+            handleInput();//Do what the user asked for since the last tick
+            handleAI(numTicks);//Have the AI do its thing
+        }
+        
+        handleCollisionsWithPlayers();//Handle collisions between the ball and the players
+        moveBall();//Move the ball
+        
+        if (startOfTick) {
+            decayMomentum(numTicks);//Decay the rotational momentum of the spindles
+            unlightGoals();//Unlight the goals if they have been lit for long enough
+        }
+    }
+    
+    /**
+     * Gets the number of key events that were thrown away because too many
+     * came in between two ticks.
+     * @return The number of dropped key events.
+     */
+    public int getNumDroppedInputs() { return this.input.getNumDropped(); }
+    /**
+     * Gets the tracker that measures how long key presses take to show up on
+     * the screen. Whatever draws the game has to tell it about every frame.
+     * @return The latency tracker.
+     */
+    public LatencyTracker getLatencyTracker() { return this.latency; }
+    /**
+     * Gets the worker that runs the computer's AI.
+     * @return The worker, or null if the AI decides during the tick.
+     */
+    public AIWorker getComputerWorker() { return this.computerWorker; }
+    
+    /**
+     * Sets how often the AIs get a turn.
+     * @param aiTurnTicks The number of ticks between the AIs' turns (at least 1).
+     */
+    public void setAITurnTicks(int aiTurnTicks) {
+        if (aiTurnTicks < 1)
+            throw new IllegalArgumentException("The AIs must have a turn at least every tick.");
+        
+        this.aiTurnTicks = aiTurnTicks;
+    }
+    public int getAITurnTicks() { return this.aiTurnTicks; }
+    
+    /**
+     * Stops the threads that the AIs run on, if they have any. The logic
+     * can't be used after this.
+     */
+    public void shutdown() {
+        if (this.computerWorker != null)
+            this.computerWorker.shutdown();
+        if (this.humanWorker != null)
+            this.humanWorker.shutdown();
+    }
+    
+    
+    
+    /**
+     * Handles all the key events queued up since the last tick, in the order
+     * they happened.
+     */
+    private void handleInput() {
+        while (this.input.poll()) {
+            if (this.input.isPressed()) {
+                applyKeyPressed(this.input.getKeyCode());
+                this.latency.inputApplied(this.input.getTime(), this.state.getElapsedTicks());
+            } else
+                applyKeyReleased(this.input.getKeyCode());
+        }
+    }
+    
+    /**
+     * Checks if the given key is valid user input, and then does what the
+     * user wanted to do.
+     * @param keyCode The key code of the key that was pressed.
+     */
+    private void applyKeyPressed(int keyCode) {
         //Handle arrow keys (rotate the selected spindles or move them up/down)
-        switch (k.getKeyCode()) {
+        switch (keyCode) {
             case KeyEvent.VK_UP:
                 this.state.moveSelectedSpindles(true);
                 break;
@@ -63,25 +227,13 @@ public class GameLogic {
     }
     
     /**
-     * Handles the given event by checking if it is valid user input, and then
-     * doing what the user wanted to do.
-     * @param k The event in question.
+     * Checks if the given key is valid user input, and then does what the
+     * user wanted to do.
+     * @param keyCode The key code of the key that was released.
      */
-    public void handleKeyReleased(KeyEvent k) {
+    private void applyKeyReleased(int keyCode) {
         //Handle letter keys (select or unselect the specified spindles)
-        this.state.toggleSpindleSelect(k.getKeyCode());
-    }
-    
-    /**
-     * Update the game because of a timer event.
-     * @param numTicks the number of times the timer has ticked so far.
-     */
-    public void respondToTimerTick(int numTicks) {
-            handleAI(numTicks);//Have the AI do its thing
-            handleCollisionsWithPlayers();//Handle collisions between the ball and the players
-            moveBall();//Move the ball
-            decayMomentum(numTicks);//Decay the rotational momentum of the spindles
-            unlightGoals();//Unlight the goals if they have been lit for long enough
+        this.state.toggleSpindleSelect(keyCode);
     }
     
     /**
@@ -89,22 +241,31 @@ public class GameLogic {
      * @param numTicks The number of ticks so far
      */
     private void decayMomentum(int numTicks) {
-        if ((numTicks % 10) == 0) {
-            Spindle[] spindles = this.state.getAllSpindles();
-            
-            for (Spindle s : spindles) {
-                s.decayMomentum();
-            }
-        }
+        if ((numTicks % 10) == 0)
+            this.state.getPlayerRegistry().decayAllMomentum();
     }
     
     /**
-     * Handles the game's "AI" by invoking the AI class every 5 ticks.
+     * Handles the game's "AI" by invoking the AIs every few ticks (5 unless
+     * it is set otherwise). AIs on threads of their own are asked for a
+     * decision on each of their turns, and what they decided is done on
+     * whichever tick it is ready by.
      * @param numTicks The number of ticks so far.
      */
     private void handleAI(int numTicks) {
-        if ((numTicks % 5) == 0)//Don't do the computer every moment - that's too fast
-            GameAI.doMoves(state);        
+        boolean turn = (numTicks % this.aiTurnTicks) == 0;
+        
+        if (this.computerWorker != null) {
+            this.computerWorker.update(this.state, numTicks, turn);
+            
+            if (this.humanWorker != null)
+                this.humanWorker.update(this.state, numTicks, turn);
+        } else if (turn) {
+            this.computerAI.doMoves(this.state);
+            
+            if (this.humanAI != null)
+                this.humanAI.doMoves(this.state);
+        }
     }
     
     /**
@@ -113,13 +274,10 @@ public class GameLogic {
      */
     private void handleCollisionsWithPlayers() {
         /*
-        Go through every spindle's players and check for collision with ball.
+        Go through every player and check for collision with ball. The
+        registry keeps all the players in flat arrays, so this is a tight loop.
         */
-        Player[] players = this.state.getAllPlayers();
-        
-        for (Player p : players) {
-            p.collide(this.state.getBall());
-        }
+        this.state.getPlayerRegistry().collideAll(this.state.getBall());
     }
     
     /**
@@ -127,7 +285,7 @@ public class GameLogic {
      */
     private void moveBall() {
         Ball ball = this.state.getBall();
-        Score score = ball.move(this.state.getTable());
+        Score score = ball.move(this.state.getTable(), this.state.getPlayerRegistry());
         
         this.state.score(score);
     }
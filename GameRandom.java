@@ -0,0 +1,98 @@
+package fussball;
+
+/**
+ * The random number generator for a game. It is SplitMix64, the same
+ * generator as java.util.SplittableRandom (and it gives the same numbers as
+ * one made with the same seed), but its whole state is a single long that
+ * can be read and set. That lets a GameSnapshot capture it along with the
+ * rest of the game, so a restored game makes the same random choices it did
+ * the first time.
+ * @author Max Strange
+ */
+public class GameRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;//What the state goes up by for each number (the same as SplittableRandom's)
+
+    private long state;
+
+    /**
+     * Constructor.
+     * @param seed The seed.
+     */
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+
+
+    /**
+     * Gets a random int.
+     * @return The int.
+     */
+    public int nextInt() {
+        return mix32(next());
+    }
+
+    /**
+     * Gets a random int from 0 up to (but not including) bound.
+     * @param bound The bound (at least 1).
+     * @return The int.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException("The bound must be positive.");
+
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            r &= m;//A power of 2, so just take the low bits
+        } else {
+            //Throw away draws from the top, incomplete stretch of bound values, so every value is as likely
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1) {
+                //Draw again
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Gets a random boolean.
+     * @return The boolean.
+     */
+    public boolean nextBoolean() {
+        return nextInt() < 0;
+    }
+
+    /**
+     * Gets the generator's state, for instance to save it in a snapshot.
+     * @return The state.
+     */
+    public long getState() { return this.state; }
+
+    /**
+     * Puts the generator back in a state it was in, so that it makes the
+     * same numbers again from there.
+     * @param state The state, from getState().
+     */
+    public void setState(long state) { this.state = state; }
+
+
+
+    /**
+     * Moves the generator on by one.
+     * @return The new state.
+     */
+    private long next() {
+        this.state += GOLDEN_GAMMA;
+        return this.state;
+    }
+
+    /**
+     * Scrambles a state into a random int.
+     * @param z The state.
+     * @return The int.
+     */
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int)(((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+}
@@ -0,0 +1,84 @@
+package fussball;
+
+/**
+ * A snapshot of everything about a game that changes as it is played: the
+ * ball (where it is, how fast it is going and whether it is off the table),
+ * every player (where it is, its orientation, momentum and time), every
+ * spindle (where it is and whether it is selected), the goal lights, the
+ * scores, the time and the random number generator. It is kept in a flat
+ * array of longs with the same layout every time (doubles are stored as
+ * their bits), so capturing and restoring a game just copies numbers back
+ * and forth - nothing is made, and it takes a fraction of a microsecond.
+ * Rewinding, rolling back, trying moves out and saving a game to resume
+ * later can all be built on top.
+ *
+ * The layout is: a header (the size of the table, the number of players,
+ * the steps per tick, the human's score, the computer's score, the elapsed
+ * ticks and the state of the game's GameRandom), then the ball, then the
+ * players an array at a time, then the spindles in the order of
+ * GameState.getAllSpindles(), then the left and right goals.
+ *
+ * Because the random number generator is captured too, a game that is
+ * restored and played on (with the same input) plays out exactly as it did
+ * the first time.
+ * @author Max Strange
+ */
+public class GameSnapshot {
+    private final long[] data;//The snapshot itself
+
+    /**
+     * Constructor. Makes an empty snapshot big enough for the given game (or
+     * any other game on the same size of table).
+     * @param state The game the snapshot is for.
+     */
+    public GameSnapshot(GameState state) {
+        this.data = new long[state.getSnapshotLength()];
+    }
+
+
+
+    /**
+     * Captures the game as it is right now, replacing whatever was captured
+     * before.
+     * @param state The game to capture. It must be on the same size of table
+     * that the snapshot was made for.
+     */
+    public void capture(GameState state) {
+        if (state.getSnapshotLength() != this.data.length)
+            throw new IllegalArgumentException("The snapshot was made for a game on a different table.");
+
+        state.writeTo(this.data);
+    }
+
+    /**
+     * Puts the game back the way it was when the snapshot was captured (or
+     * the way the data put into getData() says, for a saved snapshot).
+     * @param state The game to restore. It doesn't have to be the same game
+     * that was captured, as long as it is on the same size of table.
+     */
+    public void restore(GameState state) {
+        if (state.getSnapshotLength() != this.data.length)
+            throw new IllegalArgumentException("The snapshot was made for a game on a different table.");
+
+        state.readFrom(this.data);
+    }
+
+    /**
+     * Makes this snapshot the same as another one.
+     * @param other The snapshot to copy. It must be the same length.
+     */
+    public void copyFrom(GameSnapshot other) {
+        if (other.data.length != this.data.length)
+            throw new IllegalArgumentException("Can only copy a snapshot of the same length.");
+
+        System.arraycopy(other.data, 0, this.data, 0, this.data.length);
+    }
+
+    /**
+     * Gets the snapshot's data, for instance to save it (or to load a saved
+     * one into). The array is shared, so changing it changes the snapshot.
+     * @return The snapshot's data.
+     */
+    public long[] getData() { return this.data; }
+    public int getLength() { return this.data.length; }
+}
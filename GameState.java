@@ -1,31 +1,56 @@
 package fussball;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import javax.swing.JPanel;
+import java.util.SplittableRandom;
 
 /**
  *The state of the game all encapsulated in one location.
  * @author Max Strange
  */
 public class GameState {
-    private final Color HUMAN_COLOR = Color.BLUE;//The human player's color
-    private final Color COMPUTER_COLOR = Color.RED;//The computer player's color
-    private final int SCORE_TO_PLAY_TO = 6;//The score to play to
+    /**
+     * The length of one tick of the game in milliseconds. The elapsed time
+     * (and therefore the score) is measured in ticks of this length, so a
+     * match that is simulated faster than real time scores the same as one
+     * that is played in real time.
+     */
+    public static final int TICK_LENGTH_MS = 50;
+    public static final int SCORE_TO_PLAY_TO = 6;//The score to play to
+    private final int NUMBER_OF_PLAYERS = 18;//The number of players on the whole table (3, 5 and 1 on each side), which the PlayerRegistry makes room for up front
+    private final int SNAPSHOT_HEADER_LENGTH = 8;//The table size, the number of players, the steps per tick, the scores, the time and the random number generator
     
+    private final long seed;//The seed for all the randomness in the game
+    private final GameRandom random;//The random number generator for everything in the game
     private Table table;
     private Ball ball;
     private Team human;
     private Team computer;
+    private PlayerRegistry players;//The state of every player on the table, stored flat
+    private Spindle[] allSpindles;//Every spindle on the table (they never change after initialization)
+    private Player[] allPlayers;//Every player on the table (they never change after initialization)
     private int humanScore = 0;
     private int computerScore = 0;
-    private long startTime;
+    private int elapsedTicks = 0;//The number of ticks since the start of the game
+    private int stepsPerTick = 1;//The number of simulation steps each tick is split into
+    private int panelWidth;//The width of the area the table was made for
+    private int panelHeight;//The height of the area the table was made for
     
     /**
-     * Constructor.
+     * Constructor for a GameState with a random seed.
      */
     public GameState() {
+        this(new SplittableRandom().nextLong());
+    }
     
+    /**
+     * Constructor for a GameState with the given seed. All the randomness in
+     * the game comes from this seed, so two games with the same seed (and the
+     * same input on the same ticks) play out exactly the same.
+     * @param seed The seed for the game's random number generator.
+     */
+    public GameState(long seed) {
+        this.seed = seed;
+        this.random = new GameRandom(seed);
     }
     
     
@@ -41,12 +66,39 @@ public class GameState {
     }
     
     /**
-     * Initializes the GameState.
-     * @param tableGUI The JPanel that the table will be drawn on.
+     * Sets the number of simulation steps each tick of the game is split
+     * into. More steps make the physics smoother (and can be drawn more
+     * often) without changing how fast the game plays.
+     * @param stepsPerTick The number of steps per tick (at least 1).
      */
-    public void initialize(JPanel tableGUI) {
-        this.table = new Table(tableGUI);
-        this.ball = new Ball(this.table.getCenter().x, this.table.getCenter().y);
+    public void setStepsPerTick(int stepsPerTick) {
+        if (stepsPerTick < 1)
+            throw new IllegalArgumentException("There must be at least one step per tick.");
+        
+        this.stepsPerTick = stepsPerTick;
+        if (this.ball != null)
+            this.ball.setStepsPerTick(stepsPerTick);
+    }
+    
+    /**
+     * Tells the state that another tick of the game has gone by.
+     */
+    public void incrementElapsedTicks() {
+        this.elapsedTicks++;
+    }
+    
+    /**
+     * Initializes the GameState. Nothing here depends on the GUI, so a
+     * GameState can be initialized without ever making a window.
+     * @param panelWidth The width of the area the table will be drawn on.
+     * @param panelHeight The height of the area the table will be drawn on.
+     */
+    public void initialize(int panelWidth, int panelHeight) {
+        this.panelWidth = panelWidth;
+        this.panelHeight = panelHeight;
+        this.table = new Table(panelWidth, panelHeight);
+        this.ball = new Ball(this.table.getCenterX(), this.table.getCenterY(), this.random);
+        this.ball.setStepsPerTick(this.stepsPerTick);
         
         double width = (double)(getRightWall().getX() - getLeftWall().getX());
         
@@ -60,12 +112,115 @@ public class GameState {
         int startingXHuman = startingXComp + halfWidthInterval;
         int stickOut = getTopWall().getY() / 4;
         
-        this.human = new Team(topIntersect, bottomIntersect, 
-                startingXHuman, widthInterval, stickOut, HUMAN_COLOR, true);
-        this.computer = new Team(topIntersect, bottomIntersect, 
-                startingXComp, widthInterval, stickOut, COMPUTER_COLOR, false);
+        this.players = new PlayerRegistry(NUMBER_OF_PLAYERS);
+        this.human = new Team(this.players, topIntersect, bottomIntersect, 
+                startingXHuman, widthInterval, stickOut, true);
+        this.computer = new Team(this.players, topIntersect, bottomIntersect, 
+                startingXComp, widthInterval, stickOut, false);
         
-        this.startTime = System.nanoTime();
+        this.allSpindles = collectAllSpindles();
+        this.allPlayers = collectAllPlayers();
+        this.elapsedTicks = 0;
+    }
+    
+    /**
+     * Makes a new state that is a copy of this one (its own table, ball and
+     * players, all where they are in this one). The copy has its own random
+     * number generator, seeded with this state's seed, so it doesn't use up
+     * any of this game's randomness.
+     * @return The copy.
+     */
+    public GameState copy() {
+        GameState copy = new GameState(this.seed);
+        copy.initialize(this.panelWidth, this.panelHeight);
+        copy.copyFrom(this);
+        return copy;
+    }
+    
+    /**
+     * Makes this state the same as another one: the ball, every player and
+     * spindle, the goal lights, the scores and the time. Nothing new is made,
+     * so a state can be copied into over and over (for instance, to play the
+     * game forward from the same point many times). The random number
+     * generator is not copied - each state keeps its own.
+     * @param other The state to copy. It must have been initialized with the
+     * same size as this one.
+     */
+    public void copyFrom(GameState other) {
+        if ((other.panelWidth != this.panelWidth) || (other.panelHeight != this.panelHeight))
+            throw new IllegalArgumentException("Can only copy a state with a table of the same size.");
+        
+        this.stepsPerTick = other.stepsPerTick;
+        this.ball.copyFrom(other.ball);
+        this.players.copyFrom(other.players);
+        for (int i = 0; i < this.allSpindles.length; i++) {
+            this.allSpindles[i].copyFrom(other.allSpindles[i]);
+        }
+        getLeftGoal().copyFrom(other.getLeftGoal());
+        getRightGoal().copyFrom(other.getRightGoal());
+        this.humanScore = other.humanScore;
+        this.computerScore = other.computerScore;
+        this.elapsedTicks = other.elapsedTicks;
+    }
+    
+    /**
+     * Writes the whole state of the game into a snapshot (see GameSnapshot).
+     * @param data The snapshot's data. It must be at least
+     * getSnapshotLength() long.
+     */
+    public void writeTo(long[] data) {
+        data[0] = this.panelWidth;
+        data[1] = this.panelHeight;
+        data[2] = this.players.size();
+        data[3] = this.stepsPerTick;
+        data[4] = this.humanScore;
+        data[5] = this.computerScore;
+        data[6] = this.elapsedTicks;
+        data[7] = this.random.getState();
+        
+        int offset = this.ball.writeTo(data, SNAPSHOT_HEADER_LENGTH);
+        offset = this.players.writeTo(data, offset);
+        for (Spindle s : this.allSpindles) {
+            offset = s.writeTo(data, offset);
+        }
+        offset = getLeftGoal().writeTo(data, offset);
+        getRightGoal().writeTo(data, offset);
+    }
+    
+    /**
+     * Puts the game back the way it was when a snapshot was written,
+     * including the random number generator, so that it plays on the same
+     * way it did from there.
+     * @param data The snapshot's data, written by writeTo from a state with
+     * a table of the same size.
+     */
+    public void readFrom(long[] data) {
+        if ((data[0] != this.panelWidth) || (data[1] != this.panelHeight) || (data[2] != this.players.size()))
+            throw new IllegalArgumentException("The snapshot is of a game on a different table.");
+        
+        setStepsPerTick((int)data[3]);
+        this.humanScore = (int)data[4];
+        this.computerScore = (int)data[5];
+        this.elapsedTicks = (int)data[6];
+        this.random.setState(data[7]);
+        
+        int offset = this.ball.readFrom(data, SNAPSHOT_HEADER_LENGTH);
+        offset = this.players.readFrom(data, offset);
+        for (Spindle s : this.allSpindles) {
+            offset = s.readFrom(data, offset);
+        }
+        offset = getLeftGoal().readFrom(data, offset);
+        getRightGoal().readFrom(data, offset);
+    }
+    
+    /**
+     * Gets the number of longs a snapshot of this state takes up. It is the
+     * same for every game on the same size of table.
+     * @return The snapshot length.
+     */
+    public int getSnapshotLength() {
+        return SNAPSHOT_HEADER_LENGTH + Ball.SNAPSHOT_LENGTH + this.players.getSnapshotLength()
+                + (this.allSpindles.length * Spindle.SNAPSHOT_LENGTH) + (2 * Goal.SNAPSHOT_LENGTH);
     }
     
     /**
@@ -132,9 +287,62 @@ public class GameState {
     public Goal getLeftGoal() { return this.table.getLeftGoal(); }
     public Goal getRightGoal() { return this.table.getRightGoal(); }
     public Ball getBall() { return this.ball; }
+    public GameRandom getRandom() { return this.random; }
+    public long getSeed() { return this.seed; }
     public Spindle[] getComputerSpindles() { return this.computer.getSpindles(); }
     public Spindle[] getHumanSpindles() { return this.human.getSpindles(); }
-    public Spindle[] getAllSpindles() {
+    /**
+     * Gets every spindle on the table. The array is shared, so don't modify it.
+     * @return All the spindles, human spindles first.
+     */
+    public Spindle[] getAllSpindles() { return this.allSpindles; }
+    /**
+     * Gets every player on the table. The array is shared, so don't modify it.
+     * @return All the players, in the same order as getAllSpindles().
+     */
+    public Player[] getAllPlayers() { return this.allPlayers; }
+    /**
+     * Gets the flat store of every player's state. Player ids are in the same
+     * order as getAllPlayers().
+     * @return The player registry.
+     */
+    public PlayerRegistry getPlayerRegistry() { return this.players; }
+    public int getHumanScore() { return this.humanScore; }
+    public int getComputerScore() { return this.computerScore; }
+    public Table getTable() { return this.table; }
+    /**
+     * Gets the human player's color. The color is only looked up when asked
+     * for, so a game that is never drawn never touches the GUI classes.
+     * @return The human player's color.
+     */
+    public Color getHumanColor() { return Color.BLUE; }
+    /**
+     * Gets the computer player's color.
+     * @return The computer player's color.
+     */
+    public Color getComputerColor() { return Color.RED; }
+    public int getElapsedTicks() { return this.elapsedTicks; }
+    public int getStepsPerTick() { return this.stepsPerTick; }
+    public int getPanelWidth() { return this.panelWidth; }
+    public int getPanelHeight() { return this.panelHeight; }
+    /**
+     * Returns the number of seconds elapsed since the start of the game,
+     * counted in ticks of TICK_LENGTH_MS rather than by the wall clock.
+     * @return The number of seconds elapsed since the start of the game.
+     */
+    public double getElapsedTime() { 
+        double seconds = ((double)this.elapsedTicks * TICK_LENGTH_MS) / 1000.0;
+        
+        return seconds;
+    }
+    
+    
+    
+    /**
+     * Builds the array of all spindles, human spindles first.
+     * @return All the spindles on the table.
+     */
+    private Spindle[] collectAllSpindles() {
         Spindle[] all = new Spindle[this.human.getSpindles().length + this.computer.getSpindles().length];
         for (int i = 0; i < all.length; i++) {
             if (i < this.human.getSpindles().length)
@@ -144,33 +352,24 @@ public class GameState {
         }
         return all;
     }
-    public Player[] getAllPlayers() {
-        ArrayList<Player> allPlayers = new ArrayList<>();
-        
-        for (Spindle s : getAllSpindles()) {
-            Player[] players = s.getPlayers();
-            
-            for (Player p : players) {
-                allPlayers.add(p);
-            }
-        }
-        
-        Player[] allPlayersAsArray = new Player[allPlayers.size()];
-        return allPlayers.toArray(allPlayersAsArray);
-    }
-    public int getHumanScore() { return this.humanScore; }
-    public int getComputerScore() { return this.computerScore; }
-    public Table getTable() { return this.table; }
-    public Color getHumanColor() { return this.HUMAN_COLOR; }
-    public Color getComputerColor() { return this.COMPUTER_COLOR; }
+    
     /**
-     * Returns the number of seconds elapsed since the start of the game.
-     * @return The number of seconds elapsed since the start of the game.
+     * Builds the array of all players from the array of all spindles.
+     * @return All the players on the table.
      */
-    public double getElapsedTime() { 
-        long elapsedTime = System.nanoTime() - this.startTime;
-        double seconds = (double)elapsedTime / 1000000000.0;
+    private Player[] collectAllPlayers() {
+        int numPlayers = 0;
+        for (Spindle s : this.allSpindles) {
+            numPlayers += s.getPlayers().length;
+        }
         
-        return seconds;
+        Player[] all = new Player[numPlayers];
+        int i = 0;
+        for (Spindle s : this.allSpindles) {
+            for (Player p : s.getPlayers()) {
+                all[i++] = p;
+            }
+        }
+        return all;
     }
 }
@@ -10,6 +10,7 @@ public class Goal {
     private final int xStart;//The x value of the left-most side of the goal
     private final int xEnd;//The x value of the right-most side of the goal
     private final int LIGHT_DELAY = 10;//The number of ticks the light up effect goes on for
+    static final int SNAPSHOT_LENGTH = 2;//The number of longs a goal takes up in a snapshot
     
     private boolean litUp = false;//Whether or not the goal is lit up currently
     private int litTime = 0;//The number of ticks so far lit up.
@@ -49,6 +50,37 @@ public class Goal {
         if (!turnOn)
             this.litTime = 0;//Reset the litTime if we turn off the light.
     }
+    /**
+     * Makes this goal's light the same as another goal's.
+     * @param other The goal to copy.
+     */
+    public void copyFrom(Goal other) {
+        this.litUp = other.litUp;
+        this.litTime = other.litTime;
+    }
+    /**
+     * Writes the goal's light into a snapshot (see GameSnapshot).
+     * @param data The snapshot's data.
+     * @param offset Where to start writing.
+     * @return Where the next thing should be written.
+     */
+    public int writeTo(long[] data, int offset) {
+        data[offset] = this.litUp ? 1 : 0;
+        data[offset + 1] = this.litTime;
+        return offset + SNAPSHOT_LENGTH;
+    }
+    
+    /**
+     * Reads the goal's light back out of a snapshot written by writeTo.
+     * @param data The snapshot's data.
+     * @param offset Where to start reading.
+     * @return Where the next thing should be read from.
+     */
+    public int readFrom(long[] data, int offset) {
+        this.litUp = data[offset] != 0;
+        this.litTime = (int)data[offset + 1];
+        return offset + SNAPSHOT_LENGTH;
+    }
     
     
     public int getBottomLeftCornerY() { return this.yBottom; }
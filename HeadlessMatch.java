@@ -0,0 +1,150 @@
+package fussball;
+
+/**
+ * A match that is played without any GUI at all - the AI plays both sides
+ * (the random GameAI, unless it is given others) and the game is ticked as
+ * fast as the CPU allows instead of on a timer.
+ * Useful for running lots of AI versus AI matches on machines that don't have
+ * a display.
+ * @author Max Strange
+ */
+public class HeadlessMatch {
+    public static final int DEFAULT_WIDTH = 1000;//The default width of the (imaginary) panel
+    public static final int DEFAULT_HEIGHT = 1000;//The default height of the (imaginary) panel
+    /**
+     * The default maximum number of ticks a match may last. The ball can get
+     * stuck with nobody around to reset it, so every match needs a limit.
+     */
+    public static final int DEFAULT_MAX_TICKS = 100000;
+
+    private final GameState state;
+    private final GameLogic logic;
+    private int numTicks = 0;//The number of ticks played so far
+
+    /**
+     * Constructor for a HeadlessMatch with the default table size and a
+     * random seed.
+     */
+    public HeadlessMatch() {
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT, new GameState());
+    }
+
+    /**
+     * Constructor for a HeadlessMatch with the default table size.
+     * @param seed The seed for the match's randomness. Matches with the same
+     * seed play out exactly the same.
+     */
+    public HeadlessMatch(long seed) {
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT, new GameState(seed));
+    }
+
+    /**
+     * Constructor for a HeadlessMatch.
+     * @param width The width of the area the table would be drawn on.
+     * @param height The height of the area the table would be drawn on.
+     * @param seed The seed for the match's randomness.
+     */
+    public HeadlessMatch(int width, int height, long seed) {
+        this(width, height, new GameState(seed));
+    }
+
+    /**
+     * Constructor for a HeadlessMatch with the default table size, played by
+     * the given AIs.
+     * @param seed The seed for the match's randomness.
+     * @param computerAI The AI to play the computer's side with.
+     * @param humanAI The AI to play the human's side with.
+     */
+    public HeadlessMatch(long seed, AI computerAI, AI humanAI) {
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT, new GameState(seed), computerAI, humanAI);
+    }
+
+    /**
+     * Constructor for a HeadlessMatch that plays on the given (uninitialized)
+     * state with the random AI on both sides.
+     * @param width The width of the area the table would be drawn on.
+     * @param height The height of the area the table would be drawn on.
+     * @param state The state to play on.
+     */
+    private HeadlessMatch(int width, int height, GameState state) {
+        this(width, height, state, new GameAI(false), new GameAI(true));
+    }
+
+    /**
+     * Constructor for a HeadlessMatch that plays on the given (uninitialized)
+     * state.
+     * @param width The width of the area the table would be drawn on.
+     * @param height The height of the area the table would be drawn on.
+     * @param state The state to play on.
+     * @param computerAI The AI to play the computer's side with.
+     * @param humanAI The AI to play the human's side with.
+     */
+    private HeadlessMatch(int width, int height, GameState state, AI computerAI, AI humanAI) {
+        this.state = state;
+        this.state.initialize(width, height);
+        this.logic = new GameLogic(false, computerAI, humanAI);
+        this.logic.initialize(this.state);
+    }
+
+    /**
+     * Plays the match until somebody wins or the tick limit is reached.
+     * @param maxTicks The most ticks to play before giving up on the match.
+     * @return The winner, or NOBODY if the tick limit was reached first.
+     */
+    public Score play(int maxTicks) {
+        while (!this.state.gameIsOver() && (this.numTicks < maxTicks)) {
+            tick();
+        }
+
+        return this.state.getWinner();
+    }
+
+    /**
+     * Advances the match by a single tick.
+     */
+    public void tick() {
+        this.numTicks++;
+        this.logic.respondToTimerTick(this.numTicks);
+    }
+
+    public GameState getState() { return this.state; }
+    public GameLogic getLogic() { return this.logic; }
+    public int getNumTicks() { return this.numTicks; }
+
+
+
+    /**
+     * Plays some number of headless matches and prints the results.
+     * @param args The number of matches to play (optional, defaults to 1).
+     */
+    public static void main(String[] args) {
+        int numMatches = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+        int humanWins = 0;
+        int computerWins = 0;
+        long totalTicks = 0;
+        long totalNarrowPhaseTests = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < numMatches; i++) {
+            HeadlessMatch match = new HeadlessMatch();
+            Score winner = match.play(DEFAULT_MAX_TICKS);
+
+            if (winner == Score.HUMAN)
+                humanWins++;
+            else if (winner == Score.COMPUTER)
+                computerWins++;
+
+            totalTicks += match.getNumTicks();
+            totalNarrowPhaseTests += match.getState().getPlayerRegistry().getTotalNarrowPhaseTests();
+        }
+        double seconds = (double)(System.nanoTime() - start) / 1000000000.0;
+
+        System.out.println("Matches: " + numMatches);
+        System.out.println("Left side (human) wins: " + humanWins);
+        System.out.println("Right side (computer) wins: " + computerWins);
+        System.out.println("Unfinished: " + (numMatches - humanWins - computerWins));
+        System.out.println("Ticks: " + totalTicks);
+        System.out.println("Narrow phase tests per tick: " + ((double)totalNarrowPhaseTests / totalTicks));
+        System.out.println("Seconds: " + seconds);
+    }
+}
@@ -0,0 +1,47 @@
+package fussball;
+
+/**
+ * A name and the score that goes with it. Lower scores are better (they are
+ * the number of seconds the game took), so HighScores sort best first.
+ * @author Max Strange
+ */
+public class HighScore implements Comparable<HighScore> {
+    private final double score;
+    private final String name;
+
+    public HighScore(String name, double score) {
+        this.score = score;
+        this.name = name;
+    }
+
+    /**
+     * Constructor for parsing a string of the form "Name: SCORE" into a
+     * HighScore object.
+     * @param toParse The string to parse.
+     */
+    public HighScore(String toParse) throws IllegalArgumentException {
+        int colon = toParse.indexOf(':');
+        if ((colon < 0) || (toParse.indexOf(':', colon + 1) >= 0)) {
+            throw new IllegalArgumentException("The given string is not of"
+                    + " the form 'NAME: SCORE'");
+        } else {
+            this.name = toParse.substring(0, colon);
+            this.score = Double.parseDouble(toParse.substring(colon + 1));
+        }
+    }
+
+    @Override
+    public int compareTo(HighScore other) {
+        return Double.compare(this.score, other.getScore());
+    }
+
+    @Override
+    public String toString() {
+        return this.name + ": " + this.score;
+    }
+
+
+
+    public final double getScore() { return this.score; }
+    public final String getName() { return this.name; }
+}
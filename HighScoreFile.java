@@ -0,0 +1,432 @@
+package fussball;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ * A binary high score file, memory mapped so that scores are read and
+ * written in place. The file is a header (the ints MAGIC, VERSION, the
+ * number of records there is room for, RECORD_LENGTH and the number of
+ * records in use, then the long sequence number, padded to HEADER_LENGTH
+ * bytes) followed by room for every record, so it never grows. The records
+ * in use come first, best (lowest) score first, and each is the score (a
+ * double), when it was recorded (a long, in milliseconds since the epoch),
+ * its sequence number (a long), the length of the name in bytes and then the
+ * name in UTF-8 - up to NAME_BYTES, which is enough for
+ * ScoreViewer.MAX_USER_NAME_LENGTH of any characters.
+ *
+ * The sequence numbers are the ones a Leaderboard gives scores in its
+ * journal (0 for a score that wasn't journaled). The header's is the last
+ * one recorded, whether or not the score was good enough to stay, and it is
+ * written after the record, so the Leaderboard can tell exactly which
+ * journaled scores are already in the file.
+ *
+ * Because the records are sorted, working out a score's rank and where to
+ * insert it are binary searches over the mapped records. Inserting shifts
+ * the worse records down by one, and the worst falls off the end if the
+ * file is full.
+ *
+ * A mapping can't be undone - it lasts until the HighScoreFile is garbage
+ * collected - and on some systems (Windows) a mapped file can't be truncated,
+ * replaced or deleted. So a file is never changed except through its
+ * mapping: new files are built in memory, written under a temporary name
+ * and then renamed over the old one, which must not be mapped by any
+ * HighScoreFile still around. To empty a file that is open, use clear().
+ * @author Max Strange
+ */
+public class HighScoreFile {
+    public static final int NAME_BYTES = ScoreViewer.MAX_USER_NAME_LENGTH * 3;//The most a name takes up (UTF-8 never takes more than 3 bytes for each char)
+    private static final int MAGIC = 0x46485343;//"FHSC"
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 32;//The length of the header in bytes (padded so the records line up with longs)
+
+    //Where everything is in the header
+    private static final int CAPACITY = 8;
+    private static final int RECORD = 12;
+    private static final int COUNT = 16;
+    private static final int SEQUENCE = 24;
+
+    //Where everything is in a record
+    private static final int SCORE = 0;
+    private static final int TIME = 8;
+    private static final int RECORD_SEQUENCE = 16;
+    private static final int NAME_LENGTH = 24;
+    private static final int NAME = 25;
+    public static final int RECORD_LENGTH = ((NAME + NAME_BYTES + 7) / 8) * 8;//A whole number of longs, so records can be shifted a long at a time
+
+    private final ByteBuffer map;//The mapped file (or a file being built in memory)
+    private final int capacity;//The most records there is room for
+
+    /**
+     * Constructor. Maps an existing high score file into memory.
+     * @param fileName The high score file.
+     * @throws FileNotFoundException Thrown if the file doesn't exist.
+     * @throws IOException Thrown if the file can't be mapped or isn't a high
+     * score file of the right version.
+     */
+    public HighScoreFile(String fileName) throws FileNotFoundException, IOException {
+        if (!new File(fileName).exists())
+            throw new FileNotFoundException(fileName + " doesn't exist.");
+
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+                FileChannel channel = file.getChannel()) {
+            //Check the header before mapping, so that a file that's no good isn't left mapped (and can be replaced)
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (header.hasRemaining() && (channel.read(header) >= 0)) {
+                //Keep reading
+            }
+            this.capacity = checkHeader(header, channel.size(), fileName);
+            this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());//The mapping stays valid after the channel is closed
+        }
+    }
+
+    /**
+     * Constructor for a file being built in memory.
+     * @param capacity The most records it will hold.
+     */
+    private HighScoreFile(int capacity) {
+        this.capacity = capacity;
+        this.map = ByteBuffer.allocate(HEADER_LENGTH + (capacity * RECORD_LENGTH));
+        this.map.putInt(0, MAGIC);
+        this.map.putInt(4, VERSION);
+        this.map.putInt(CAPACITY, capacity);
+        this.map.putInt(RECORD, RECORD_LENGTH);
+        this.map.putInt(COUNT, 0);
+    }
+
+    /**
+     * Makes a new, empty high score file, replacing any file that is there -
+     * which mustn't be mapped by a HighScoreFile (use clear() on that
+     * instead).
+     * @param fileName The file to make.
+     * @param capacity The most records it will hold.
+     * @return The file, mapped.
+     * @throws IOException Thrown if the file can't be made.
+     */
+    public static HighScoreFile create(String fileName, int capacity) throws IOException {
+        checkCapacity(capacity);
+        new HighScoreFile(capacity).write(fileName);
+        return new HighScoreFile(fileName);
+    }
+
+    /**
+     * Makes a high score file from an old text one (of "Name: SCORE" lines).
+     * The text file is left where it is, but isn't needed after this. Every score is given the time the
+     * text file was last changed, since it doesn't say when they were
+     * recorded. The new file is built in memory, written under a temporary
+     * name and only given its real name once it is finished, so it is never
+     * found half made. Like create(), it replaces any file that is there,
+     * which mustn't be mapped.
+     * @param textFileName The text file.
+     * @param fileName The high score file to make.
+     * @param capacity The most records it will hold.
+     * @return The new file, mapped.
+     * @throws FileNotFoundException Thrown if the text file doesn't exist.
+     * @throws IOException Thrown if the text file can't be read or the new
+     * file can't be made.
+     */
+    public static HighScoreFile migrate(String textFileName, String fileName, int capacity) throws FileNotFoundException, IOException {
+        checkCapacity(capacity);
+        File textFile = new File(textFileName);
+        if (!textFile.exists())
+            throw new FileNotFoundException(textFileName + " doesn't exist.");
+
+        long time = textFile.lastModified();
+        HighScoreFile image = new HighScoreFile(capacity);
+        for (String line : Files.readAllLines(textFile.toPath(), StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) {
+                HighScore hs = new HighScore(line);
+                image.record(hs.getName(), hs.getScore(), time);
+            }
+        }
+        image.write(fileName);
+        return new HighScoreFile(fileName);
+    }
+
+
+
+    /**
+     * Works out where a score would rank.
+     * @param score The score.
+     * @return The number of records with a better score than it (so 0 is the
+     * best).
+     */
+    public synchronized int getRank(double score) {
+        return search(score, false);
+    }
+
+    /**
+     * Records a score, if it is good enough to fit in the file. A score that
+     * equals one already there goes after it.
+     * @param name The name to record with the score. It is cut short if it is
+     * more than NAME_BYTES in UTF-8.
+     * @param score The score.
+     * @param time When the score was recorded, in milliseconds since the
+     * epoch.
+     * @param sequence The sequence number the score was journaled with (see
+     * Leaderboard), or 0 if it wasn't. If it is more than getSequence(), it
+     * becomes the file's sequence number, even if the score isn't good
+     * enough to be recorded.
+     * @return Whether the score was recorded.
+     */
+    public synchronized boolean record(String name, double score, long time, long sequence) {
+        boolean recorded = insert(name, score, time, sequence);
+        if (sequence > getSequence())
+            this.map.putLong(SEQUENCE, sequence);//Only once the record is in
+        return recorded;
+    }
+
+    /**
+     * Records a score that wasn't journaled, if it is good enough to fit in
+     * the file.
+     * @param name The name to record with the score.
+     * @param score The score.
+     * @param time When the score was recorded, in milliseconds since the
+     * epoch.
+     * @return Whether the score was recorded.
+     */
+    public boolean record(String name, double score, long time) {
+        return record(name, score, time, 0L);
+    }
+
+    /**
+     * Records a score with the current time, if it is good enough to fit in
+     * the file.
+     * @param name The name to record with the score.
+     * @param score The score.
+     * @return Whether the score was recorded.
+     */
+    public boolean record(String name, double score) {
+        return record(name, score, System.currentTimeMillis());
+    }
+
+    /**
+     * Gets a record.
+     * @param rank The record's rank (0 is the best).
+     * @return The record's name and score.
+     */
+    public synchronized HighScore get(int rank) {
+        checkRank(rank);
+        int r = recordAt(rank);
+        byte[] bytes = new byte[this.map.get(r + NAME_LENGTH) & 0xff];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = this.map.get(r + NAME + i);
+        }
+        return new HighScore(new String(bytes, StandardCharsets.UTF_8), this.map.getDouble(r + SCORE));
+    }
+
+    /**
+     * Gets when a record was recorded.
+     * @param rank The record's rank (0 is the best).
+     * @return The time, in milliseconds since the epoch.
+     */
+    public synchronized long getTime(int rank) {
+        checkRank(rank);
+        return this.map.getLong(recordAt(rank) + TIME);
+    }
+
+    /**
+     * Gets every score in the file, best first.
+     * @return The scores, as strings of the form "Name: SCORE".
+     */
+    public synchronized ArrayList<String> getScores() {
+        int count = getCount();
+        ArrayList<String> scores = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            scores.add(get(rank).toString());
+        }
+        return scores;
+    }
+
+    /**
+     * Empties the file (in place, so it stays mapped).
+     */
+    public synchronized void clear() {
+        this.map.putInt(COUNT, 0);
+    }
+
+    /**
+     * Checks whether a journaled score is among the records.
+     * @param sequence The sequence number it was journaled with.
+     * @return Whether it is.
+     */
+    public synchronized boolean contains(long sequence) {
+        int count = getCount();
+        for (int rank = 0; rank < count; rank++) {
+            if (this.map.getLong(recordAt(rank) + RECORD_SEQUENCE) == sequence)
+                return true;
+        }
+        return false;
+    }
+
+    public synchronized int getCount() { return this.map.getInt(COUNT); }
+    public synchronized long getSequence() { return this.map.getLong(SEQUENCE); }
+    public int getCapacity() { return this.capacity; }
+
+    /**
+     * Makes sure everything recorded is written to the disk. The file can
+     * still be used after this (there is no closing a mapped file - the
+     * mapping goes away once it is garbage collected).
+     */
+    public synchronized void flush() {
+        if (this.map instanceof MappedByteBuffer)
+            ((MappedByteBuffer)this.map).force();
+    }
+
+
+
+    /**
+     * Writes a file built in memory to the disk, under a temporary name that
+     * is then renamed over fileName.
+     * @param fileName The file to write.
+     * @throws IOException Thrown if it can't be written.
+     */
+    private void write(String fileName) throws IOException {
+        File temp = new File(fileName + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp);
+                FileChannel channel = out.getChannel()) {
+            ByteBuffer image = this.map.duplicate();
+            image.clear();
+            while (image.hasRemaining()) {
+                channel.write(image);
+            }
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), new File(fileName).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Checks the header of a high score file.
+     * @param header The header, as read from the file.
+     * @param length The length of the file.
+     * @param fileName The file (for saying what is wrong with it).
+     * @return The number of records there is room for.
+     * @throws IOException Thrown if it isn't a high score file of the right
+     * version, or is damaged.
+     */
+    private static int checkHeader(ByteBuffer header, long length, String fileName) throws IOException {
+        if ((header.position() < HEADER_LENGTH) || (header.getInt(0) != MAGIC))
+            throw new IOException(fileName + " is not a high score file.");
+        if ((header.getInt(4) != VERSION) || (header.getInt(RECORD) != RECORD_LENGTH))
+            throw new IOException(fileName + " is a high score file from a different version of the game.");
+
+        int capacity = header.getInt(CAPACITY);
+        int count = header.getInt(COUNT);
+        if ((capacity < 1) || (count < 0) || (count > capacity) || (length != (HEADER_LENGTH + ((long)capacity * RECORD_LENGTH))))
+            throw new IOException(fileName + " is damaged.");
+        return capacity;
+    }
+
+    /**
+     * Checks that a file would have room for at least one record.
+     * @param capacity The most records it would hold.
+     */
+    private static void checkCapacity(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("A high score file must have room for at least one score.");
+    }
+
+    /**
+     * Puts a record in its place, if it is good enough to fit in the file.
+     * @param name The name.
+     * @param score The score.
+     * @param time When it was recorded.
+     * @param sequence Its sequence number.
+     * @return Whether it was put in.
+     */
+    private boolean insert(String name, double score, long time, long sequence) {
+        int count = getCount();
+        int rank = search(score, true);
+        if (rank >= this.capacity)
+            return false;
+
+        //Shift the worse records down one (from the end, so nothing is overwritten before it is moved), dropping the last if full
+        int start = recordAt(rank);
+        int end = recordAt(Math.min(count, this.capacity - 1));
+        for (int i = end - 8; i >= start; i -= 8) {
+            this.map.putLong(i + RECORD_LENGTH, this.map.getLong(i));
+        }
+
+        byte[] bytes = encodeName(name);
+        this.map.putDouble(start + SCORE, score);
+        this.map.putLong(start + TIME, time);
+        this.map.putLong(start + RECORD_SEQUENCE, sequence);
+        this.map.put(start + NAME_LENGTH, (byte)bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            this.map.put(start + NAME + i, bytes[i]);
+        }
+        this.map.putInt(COUNT, Math.min(count + 1, this.capacity));
+        return true;
+    }
+
+    /**
+     * Binary searches the records for a score.
+     * @param score The score.
+     * @param after If true, finds the first record with a worse score.
+     * Otherwise, finds the first record with a score that is as good or
+     * worse.
+     * @return The rank of the record found (the number of records if there
+     * isn't one).
+     */
+    private int search(double score, boolean after) {
+        int low = 0;
+        int high = getCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int c = Double.compare(this.map.getDouble(recordAt(mid) + SCORE), score);
+            if ((c < 0) || (after && (c == 0)))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Works out where a record starts in the file.
+     * @param rank The record's rank.
+     * @return Where it starts.
+     */
+    private static int recordAt(int rank) {
+        return HEADER_LENGTH + (rank * RECORD_LENGTH);
+    }
+
+    /**
+     * Checks that there is a record with a rank.
+     * @param rank The rank.
+     */
+    private void checkRank(int rank) {
+        if ((rank < 0) || (rank >= getCount()))
+            throw new IndexOutOfBoundsException("There is no record with rank " + rank);
+    }
+
+    /**
+     * Turns a name into UTF-8, cut short (without splitting a character) if
+     * it is more than NAME_BYTES.
+     * @param name The name.
+     * @return The bytes.
+     */
+    private static byte[] encodeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= NAME_BYTES)
+            return bytes;
+
+        int length = NAME_BYTES;
+        while ((length > 0) && ((bytes[length] & 0xc0) == 0x80)) {
+            length--;//Don't cut into the middle of a character
+        }
+        byte[] cut = new byte[length];
+        System.arraycopy(bytes, 0, cut, 0, length);
+        return cut;
+    }
+}
@@ -0,0 +1,114 @@
+package fussball;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A queue of key presses and releases, going from the event dispatch thread
+ * (which puts them in) to the simulation thread (which takes them out at the
+ * start of each tick). There is only ever one thread putting events in and
+ * one taking them out, so the queue needs no locks: each side only ever
+ * writes its own end of a ring of slots, and publishes its end to the other
+ * side with an ordered write. Putting an event in never waits - if the queue
+ * is full, the event is dropped.
+ *
+ * The events are kept as plain longs, so nothing is allocated for them.
+ * @author Max Strange
+ */
+public class InputQueue {
+    private final long[] events;//Two longs for each event: the key code and whether it was a press, then the time
+    private final int mask;//The capacity minus one, for wrapping around the ring
+    private final AtomicLong head = new AtomicLong();//The number of events taken out (only the consumer changes this)
+    private final AtomicLong tail = new AtomicLong();//The number of events put in (only the producer changes this)
+    private long cachedHead = 0;//The producer's last look at head (saves reading it every time)
+    private long cachedTail = 0;//The consumer's last look at tail
+    private volatile int numDropped = 0;//The number of events dropped because the queue was full
+
+    private int polledKeyCode;//The key code of the last event taken out
+    private boolean polledPressed;//Whether the last event taken out was a press
+    private long polledTime;//The System.nanoTime() of the last event taken out
+
+    /**
+     * Constructor.
+     * @param capacity The most events the queue can hold (must be a power of two).
+     */
+    public InputQueue(int capacity) {
+        if ((capacity < 1) || ((capacity & (capacity - 1)) != 0))
+            throw new IllegalArgumentException("The capacity must be a power of two.");
+
+        this.events = new long[capacity * 2];
+        this.mask = capacity - 1;
+    }
+
+
+
+    /**
+     * Puts an event in the queue. Only one thread may ever call this.
+     * @param keyCode The key code of the key.
+     * @param pressed True if the key was pressed, false if it was released.
+     * @param time The System.nanoTime() that the event happened.
+     * @return True if the event was queued, false if the queue was full (and
+     * so the event was dropped).
+     */
+    public boolean offer(int keyCode, boolean pressed, long time) {
+        long t = this.tail.get();
+        if ((t - this.cachedHead) > this.mask) {
+            this.cachedHead = this.head.get();
+            if ((t - this.cachedHead) > this.mask) {
+                this.numDropped++;//Only this thread writes it
+                return false;
+            }
+        }
+
+        int slot = (int)(t & this.mask) * 2;
+        this.events[slot] = ((long)keyCode << 1) | (pressed ? 1 : 0);
+        this.events[slot + 1] = time;
+        this.tail.lazySet(t + 1);//Publish the event (after the writes above)
+
+        return true;
+    }
+
+    /**
+     * Takes the oldest event out of the queue, if there is one. Its details
+     * can then be got from getKeyCode(), isPressed() and getTime(). Only one
+     * thread may ever call this.
+     * @return True if an event was taken out, false if the queue was empty.
+     */
+    public boolean poll() {
+        long h = this.head.get();
+        if (h >= this.cachedTail) {
+            this.cachedTail = this.tail.get();
+            if (h >= this.cachedTail)
+                return false;
+        }
+
+        int slot = (int)(h & this.mask) * 2;
+        long event = this.events[slot];
+        this.polledKeyCode = (int)(event >> 1);
+        this.polledPressed = (event & 1) != 0;
+        this.polledTime = this.events[slot + 1];
+        this.head.lazySet(h + 1);//Give the slot back to the producer
+
+        return true;
+    }
+
+    /**
+     * Gets the key code of the last event taken out by poll().
+     * @return The key code.
+     */
+    public int getKeyCode() { return this.polledKeyCode; }
+    /**
+     * Gets whether the last event taken out by poll() was a press.
+     * @return True for a press, false for a release.
+     */
+    public boolean isPressed() { return this.polledPressed; }
+    /**
+     * Gets when the last event taken out by poll() happened.
+     * @return The System.nanoTime() of the event.
+     */
+    public long getTime() { return this.polledTime; }
+    /**
+     * Gets the number of events that have been dropped because the queue was full.
+     * @return The number of dropped events.
+     */
+    public int getNumDropped() { return this.numDropped; }
+}
@@ -0,0 +1,68 @@
+package fussball;
+
+/**
+ * An AI that plays properly: instead of flailing around and chasing where
+ * the ball is now, it works out where the ball is going to cross each of its
+ * spindles (and when), lines up the nearest player on each spindle with that
+ * spot, and winds up a kick as the ball arrives. The ball's path is predicted once per
+ * decision and shared by all the spindles.
+ *
+ * Each InterceptAI plays one side of the table, and keeps its prediction
+ * between decisions so that deciding allocates nothing.
+ * @author Max Strange
+ */
+public class InterceptAI implements AI {
+    /**
+     * Start kicking if the ball will get to the spindle within this many ticks.
+     * The AI only decides every 5 ticks and each turn of the spindle adds a
+     * little momentum, so it takes a few decisions to wind up a hard kick.
+     */
+    private final double KICK_HORIZON_TICKS = 15.0;
+
+    private final boolean human;//Whether this AI plays the human's side (and so kicks towards the left goal)
+    private BallPredictor predictor = null;//Where the ball will cross each spindle (made once the spindles exist)
+
+    /**
+     * Constructor.
+     * @param human If true, the AI plays the human's side of the table.
+     * Otherwise, it plays the computer's side.
+     */
+    public InterceptAI(boolean human) {
+        this.human = human;
+    }
+
+
+
+    /**
+     * Decides on and does the moves for this AI's spindles.
+     * @param state The state to update according to what the AI ends up doing.
+     */
+    @Override
+    public void doMoves(GameState state) {
+        Spindle[] spindles = this.human ? state.getHumanSpindles() : state.getComputerSpindles();
+        if (this.predictor == null)
+            this.predictor = BallPredictor.forSpindles(spindles);
+
+        Ball ball = state.getBall();
+        this.predictor.predict(ball, state.getTable());
+
+        for (int i = 0; i < spindles.length; i++) {
+            Spindle s = spindles[i];
+            double targetY = this.predictor.getCrossingY(i);
+            double ticks = this.predictor.getCrossingTicks(i);
+
+            //Line up the player that can get nearest to where the ball will be
+            Player nearest = s.getNearestPlayer(targetY);
+            double offset = targetY - nearest.getY();
+            if (Math.abs(offset) > (s.getDistancePerMove() / 2.0))
+                s.move(offset < 0.0);
+
+            //Wind up as the ball arrives, so the feet have momentum when it gets here. Otherwise get the feet down to block
+            boolean inReach = Math.abs(ball.getPreciseX() - s.getX()) <= (PlayerRegistry.LEG_LENGTH + ball.getRadius());
+            if (inReach || (ticks <= KICK_HORIZON_TICKS))
+                s.rotate(this.human);//Towards the opponent's goal
+            else if (nearest.getOrientation() == Orientation.UP)
+                s.rotate(this.human);
+        }
+    }
+}
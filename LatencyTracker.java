@@ -0,0 +1,168 @@
+package fussball;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures input-to-photon latency: the time from a key being pressed to the
+ * first frame that shows what the key did being drawn. Each key press is
+ * stamped when it reaches the window, the simulation thread tags it with the
+ * tick that applied it, and whichever thread draws the game records the
+ * latency when it first draws a frame from that tick (or a later one).
+ *
+ * The latencies of the most recent presses are kept so that percentiles can
+ * be worked out from them, shown while playing, and written to a file.
+ * @author Max Strange
+ */
+public class LatencyTracker {
+    public static final String DUMP_FILE_NAME = "latency.txt";
+
+    private final int PENDING_CAPACITY = 256;//The most presses that can be applied but not yet drawn
+    private final int WINDOW = 1024;//The number of most recent latencies the percentiles are worked out from
+
+    /*
+    Presses that have been applied but not yet drawn. Only the simulation
+    thread puts them in and only the drawing thread takes them out, so this is
+    a lock-free ring, the same as an InputQueue.
+    */
+    private final long[] pending = new long[PENDING_CAPACITY * 2];//Two longs for each press: its System.nanoTime(), then the tick that applied it
+    private final AtomicLong pendingHead = new AtomicLong();//The number taken out (only the drawing thread changes this)
+    private final AtomicLong pendingTail = new AtomicLong();//The number put in (only the simulation thread changes this)
+    private long cachedHead = 0;//The simulation thread's last look at pendingHead
+    private long cachedTail = 0;//The drawing thread's last look at pendingTail
+
+    private final long[] samples = new long[WINDOW];//The most recent latencies in nanoseconds (a ring)
+    private final long[] sorted = new long[WINDOW];//The samples in order, for working out percentiles
+    private int numSamples = 0;//The number of latencies ever recorded
+    private boolean sortedIsCurrent = true;//Whether sorted has every sample in it
+
+    /**
+     * Constructor.
+     */
+    public LatencyTracker() {
+    }
+
+
+
+    /**
+     * Tells the tracker that a key press has been applied to the game. Only
+     * the simulation thread may call this. Never waits - if too many presses
+     * are waiting to be drawn, this one isn't measured.
+     * @param inputTime The System.nanoTime() the key was pressed.
+     * @param tick The tick that applied it.
+     */
+    public void inputApplied(long inputTime, int tick) {
+        long t = this.pendingTail.get();
+        if ((t - this.cachedHead) >= PENDING_CAPACITY) {
+            this.cachedHead = this.pendingHead.get();
+            if ((t - this.cachedHead) >= PENDING_CAPACITY)
+                return;
+        }
+
+        int slot = (int)(t % PENDING_CAPACITY) * 2;
+        this.pending[slot] = inputTime;
+        this.pending[slot + 1] = tick;
+        this.pendingTail.lazySet(t + 1);
+    }
+
+    /**
+     * Tells the tracker that a frame has been drawn, so that every key press
+     * applied in or before the frame's tick gets its latency recorded. Only
+     * the thread that draws the game may call this.
+     * @param tick The tick that the frame was drawn from.
+     * @param paintTime The System.nanoTime() the frame was drawn.
+     */
+    public void framePainted(int tick, long paintTime) {
+        while (true) {
+            long h = this.pendingHead.get();
+            if (h >= this.cachedTail) {
+                this.cachedTail = this.pendingTail.get();
+                if (h >= this.cachedTail)
+                    return;//Nothing waiting
+            }
+
+            int slot = (int)(h % PENDING_CAPACITY) * 2;
+            if (this.pending[slot + 1] > tick)
+                return;//Not drawn yet (and neither is anything after it)
+
+            record(paintTime - this.pending[slot]);
+            this.pendingHead.lazySet(h + 1);
+        }
+    }
+
+    /**
+     * Gets a percentile of the recent latencies.
+     * @param percentile The percentile (between 0 and 100).
+     * @return The latency in nanoseconds, or 0 if nothing has been measured yet.
+     */
+    public synchronized long getPercentile(double percentile) {
+        int count = Math.min(this.numSamples, WINDOW);
+        if (count == 0)
+            return 0;
+
+        if (!this.sortedIsCurrent) {
+            System.arraycopy(this.samples, 0, this.sorted, 0, count);
+            Arrays.sort(this.sorted, 0, count);
+            this.sortedIsCurrent = true;
+        }
+
+        int index = (int)Math.ceil((percentile / 100.0) * count) - 1;
+        return this.sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Gets the number of latencies ever recorded.
+     * @return The number of key presses measured.
+     */
+    public synchronized int getNumSamples() { return this.numSamples; }
+
+    /**
+     * Writes the percentiles and every recent latency (oldest first, in
+     * milliseconds) to a file.
+     * @param fileName The file to write to.
+     * @throws IOException Thrown if the file can't be written.
+     */
+    public synchronized void writeToFile(String fileName) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write("Key presses measured: " + this.numSamples);
+            writer.newLine();
+            writer.write("p50: " + toMillis(getPercentile(50)) + " ms");
+            writer.newLine();
+            writer.write("p95: " + toMillis(getPercentile(95)) + " ms");
+            writer.newLine();
+            writer.write("p99: " + toMillis(getPercentile(99)) + " ms");
+            writer.newLine();
+
+            int count = Math.min(this.numSamples, WINDOW);
+            int oldest = (this.numSamples > WINDOW) ? (this.numSamples % WINDOW) : 0;
+            for (int i = 0; i < count; i++) {
+                writer.write(Double.toString(toMillis(this.samples[(oldest + i) % WINDOW])));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     * @param nanos The time in nanoseconds.
+     * @return The time in milliseconds.
+     */
+    public static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+
+
+    /**
+     * Adds a latency to the recent latencies.
+     * @param latency The latency in nanoseconds.
+     */
+    private synchronized void record(long latency) {
+        this.samples[this.numSamples % WINDOW] = latency;
+        this.numSamples++;
+        this.sortedIsCurrent = false;
+    }
+}
@@ -0,0 +1,333 @@
+package fussball;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The best scores, kept sorted in memory over a HighScoreFile so that
+ * recording one is O(log n) and reading them all doesn't touch the file.
+ *
+ * Each score that makes the leaderboard is given the next sequence number
+ * and appended to a journal next to the file (as a "SEQUENCE TIME Name:
+ * SCORE" line) with a single write. Once COMPACT_AFTER scores are waiting,
+ * they are recorded into the HighScoreFile in the background, the file is
+ * flushed to the disk and then the journal is emptied (if nothing new was
+ * journaled in the meantime - otherwise the next compaction will).
+ *
+ * The HighScoreFile keeps the last sequence number it was given, and each
+ * record's own, so opening a leaderboard records into the file exactly the
+ * journaled scores that didn't get there before the program stopped: those
+ * with a later sequence number than the file's that aren't already among
+ * its records. Equal scores are all kept, in the order they were recorded.
+ * @author Max Strange
+ */
+public class Leaderboard {
+    public static final String JOURNAL_SUFFIX = ".journal";
+    private final int COMPACT_AFTER = 32;//The number of scores waiting in the journal that makes it get compacted
+
+    private final HighScoreFile scores;
+    private final File journalFile;
+    private final TreeSet<Entry> entries = new TreeSet<>();
+    private final ArrayList<Journaled> waiting = new ArrayList<>();//Scores journaled but not yet recorded into the file
+    private final Object compactLock = new Object();//Held for all of a compaction, so the journal is only emptied once what's in it is on the disk
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+    private FileOutputStream journal;
+    private long numRecorded = 0;//Used to order equal scores (the earlier one ranks higher)
+    private long sequence;//The last sequence number given out
+    private boolean compacting = false;
+    private IOException compactFailure = null;//Why the last compaction failed, to be thrown by the next call
+
+    /**
+     * Opens a leaderboard: records whatever was journaled but didn't get
+     * into the file last time, then reads the file.
+     * @param scores The file the scores are kept in.
+     * @param journalFileName The journal (usually the file's name plus
+     * JOURNAL_SUFFIX). It is made if it doesn't exist.
+     * @throws IOException Thrown if the journal can't be read or opened for
+     * writing, or is damaged.
+     */
+    public Leaderboard(HighScoreFile scores, String journalFileName) throws IOException {
+        this.scores = scores;
+        this.journalFile = new File(journalFileName);
+        this.sequence = scores.getSequence();
+
+        if (this.journalFile.exists()) {
+            for (String line : readLines(this.journalFile)) {
+                Journaled j = Journaled.parse(line, this.journalFile);
+                if ((j.sequence > scores.getSequence()) && !scores.contains(j.sequence))
+                    scores.record(j.score.getName(), j.score.getScore(), j.time, j.sequence);
+                this.sequence = Math.max(this.sequence, j.sequence);
+            }
+            scores.flush();
+        }
+        this.journal = new FileOutputStream(this.journalFile, true);//Appending, so writes after emptying it go at the start
+        this.journal.getChannel().truncate(0);//Everything in it is in the file now
+
+        for (int rank = 0; rank < scores.getCount(); rank++) {
+            add(scores.get(rank));
+        }
+    }
+
+
+
+    /**
+     * Records a score if it is good enough to be on the leaderboard.
+     * @param name The name to record with the score.
+     * @param score The score.
+     * @return Whether the score made the leaderboard.
+     * @throws IOException Thrown if the score can't be written to the journal,
+     * or the last background compaction failed.
+     */
+    public synchronized boolean record(String name, double score) throws IOException {
+        throwCompactFailure();
+        if ((this.entries.size() >= this.scores.getCapacity()) && (score >= this.entries.last().score.getScore()))
+            return false;
+
+        Journaled j = new Journaled(new HighScore(name, score), System.currentTimeMillis(), this.sequence + 1);
+        this.journal.write((j.toString() + System.getProperty("line.separator")).getBytes(StandardCharsets.UTF_8));
+        this.sequence = j.sequence;
+        add(j.score);
+        this.waiting.add(j);
+
+        if ((this.waiting.size() >= COMPACT_AFTER) && !this.compacting) {
+            this.compacting = true;
+            this.compactor.execute(new Compaction());
+        }
+        return true;
+    }
+
+    /**
+     * Gets every score on the leaderboard, best first.
+     * @return The scores, as strings of the form "Name: SCORE".
+     */
+    public synchronized ArrayList<String> getScores() {
+        ArrayList<String> scores = new ArrayList<>(this.entries.size());
+        for (Entry e : this.entries) {
+            scores.add(e.score.toString());
+        }
+        return scores;
+    }
+
+    public synchronized int getNumScores() { return this.entries.size(); }
+
+    /**
+     * Empties the leaderboard, the file and the journal.
+     * @throws IOException Thrown if the journal can't be emptied.
+     */
+    public synchronized void clear() throws IOException {
+        this.entries.clear();
+        this.waiting.clear();
+        this.scores.clear();
+        this.journal.getChannel().truncate(0);
+    }
+
+    /**
+     * Records every waiting score into the file, flushes it to the disk and
+     * empties the journal, without waiting for a background compaction.
+     * @throws IOException Thrown if the journal can't be emptied, or the last
+     * background compaction failed.
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            throwCompactFailure();
+        }
+        compact();
+    }
+
+    /**
+     * Flushes the leaderboard and closes its journal. The leaderboard can't
+     * record scores after this. The HighScoreFile stays open.
+     * @throws IOException Thrown if the journal can't be emptied or closed.
+     */
+    public void close() throws IOException {
+        this.compactor.shutdown();
+        try {
+            this.compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            this.compactFailure = null;//Compacting again will either fix it or throw again
+        }
+        compact();
+        synchronized (this) {
+            this.journal.close();
+        }
+    }
+
+
+
+    /**
+     * Puts a score on the leaderboard, dropping the worst score if there are
+     * too many.
+     * @param hs The score.
+     */
+    private void add(HighScore hs) {
+        this.entries.add(new Entry(hs, this.numRecorded++));
+        if (this.entries.size() > this.scores.getCapacity())
+            this.entries.pollLast();
+    }
+
+    /**
+     * Records the waiting scores into the file and empties the journal once
+     * the file is on the disk. Scores journaled while the file is being
+     * flushed wait for the next compaction.
+     * @throws IOException Thrown if the journal can't be emptied.
+     */
+    private void compact() throws IOException {
+        synchronized (this.compactLock) {
+            synchronized (this) {
+                for (Journaled j : this.waiting) {
+                    this.scores.record(j.score.getName(), j.score.getScore(), j.time, j.sequence);
+                }
+                this.waiting.clear();
+            }
+
+            this.scores.flush();//Slow, so outside the lock
+
+            synchronized (this) {
+                if (this.waiting.isEmpty())
+                    this.journal.getChannel().truncate(0);
+            }
+        }
+    }
+
+    /**
+     * Throws the reason the last background compaction failed, if it did.
+     * @throws IOException The reason.
+     */
+    private void throwCompactFailure() throws IOException {
+        if (this.compactFailure != null) {
+            IOException e = this.compactFailure;
+            this.compactFailure = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every line of a text file.
+     * @param file The file.
+     * @return The lines.
+     * @throws IOException Thrown if the file can't be read.
+     */
+    private static ArrayList<String> readLines(File file) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty())
+                    lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * A score on the leaderboard, with the order it was recorded in so that
+     * equal scores can both be kept.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final HighScore score;
+        private final long number;
+
+        public Entry(HighScore score, long number) {
+            this.score = score;
+            this.number = number;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int c = this.score.compareTo(other.score);
+            return (c != 0) ? c : Long.compare(this.number, other.number);
+        }
+    }
+
+    /**
+     * A score as it is in the journal.
+     */
+    private static class Journaled {
+        private final HighScore score;
+        private final long time;//When it was recorded, in milliseconds since the epoch
+        private final long sequence;
+
+        public Journaled(HighScore score, long time, long sequence) {
+            this.score = score;
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Parses a line of the journal.
+         * @param line The line, of the form "SEQUENCE TIME Name: SCORE".
+         * @param journal The journal (for saying what is wrong with it).
+         * @return The score.
+         * @throws IOException Thrown if the line isn't of that form.
+         */
+        public static Journaled parse(String line, File journal) throws IOException {
+            int first = line.indexOf(' ');
+            int second = (first < 0) ? -1 : line.indexOf(' ', first + 1);
+            try {
+                if (second < 0)
+                    throw new IllegalArgumentException("Too few fields");
+                return new Journaled(new HighScore(line.substring(second + 1)), Long.parseLong(line.substring(first + 1, second)),
+                        Long.parseLong(line.substring(0, first)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(journal + " is damaged: " + line, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.sequence + " " + this.time + " " + this.score;
+        }
+    }
+
+    /**
+     * Makes daemon threads, so that compacting doesn't keep the program
+     * running once it is finished (the journal is replayed next time).
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Leaderboard compaction");
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    /**
+     * Compacts the journal in the background.
+     */
+    private class Compaction implements Runnable {
+        @Override
+        public void run() {
+            try {
+                compact();
+            } catch (IOException e) {
+                synchronized (Leaderboard.this) {
+                    Leaderboard.this.compactFailure = e;
+                }
+            } finally {
+                synchronized (Leaderboard.this) {
+                    //If enough scores piled up again while compacting, go again
+                    Leaderboard.this.compacting = (Leaderboard.this.compactFailure == null)
+                            && (Leaderboard.this.waiting.size() >= COMPACT_AFTER);
+                    if (Leaderboard.this.compacting)
+                        Leaderboard.this.compactor.execute(new Compaction());
+                }
+            }
+        }
+    }
+}
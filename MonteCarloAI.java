@@ -0,0 +1,257 @@
+package fussball;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An AI that tries its moves out before making them. It starts from what an
+ * InterceptAI would do, then for every one of its spindles, each extra thing
+ * the spindle could do on top of that (move up, stay or move down, and rotate
+ * either way or not at all) is tried in copies of the game. The copies are
+ * played forward a couple of seconds with an InterceptAI on this side and the
+ * random GameAI on the other. Whatever came out best on average is what the
+ * spindle actually does, as long as it beat doing nothing extra.
+ *
+ * The copies are played on every core at once, each worker copying the game
+ * into a state of its own (so a rollout makes nothing new), and they stop as
+ * soon as the time budget for the decision is up, so the AI never holds up
+ * the game by more than that. Because of this the AI's decisions depend on
+ * how fast the machine is, so games it plays can't be replayed exactly.
+ * @author Max Strange
+ */
+public class MonteCarloAI implements AI {
+    public static final long DEFAULT_BUDGET_NANOS = 10000000L;//The default time to spend on each decision (10 ms)
+    private final int ROLLOUT_TICKS = 40;//How far each copy of the game is played forward (2 seconds)
+    private final double GOAL_VALUE = 1000.0;//How much a goal is worth, compared to a pixel of the ball's progress
+
+    private final boolean human;//Whether this AI plays the human's side (otherwise the computer's)
+    private final long budgetNanos;//How long to spend on each decision
+    private final int numThreads;//The number of threads to play rollouts on
+    private final InterceptAI baseline;//Decides what the spindles do before anything extra is tried
+    private final ExecutorService pool;
+    private final List<Rollouts> workers = new ArrayList<>();//Made once the size of the table is known
+    private int numRollouts = 0;//The number of rollouts played for the last decision
+
+    /**
+     * Constructor for an AI that uses every core and the default time budget.
+     * @param human If true, the AI plays the human's side of the table.
+     * Otherwise, it plays the computer's side.
+     */
+    public MonteCarloAI(boolean human) {
+        this(human, DEFAULT_BUDGET_NANOS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * @param human If true, the AI plays the human's side of the table.
+     * Otherwise, it plays the computer's side.
+     * @param budgetNanos How long to spend on each decision, in nanoseconds.
+     * @param numThreads The number of threads to play rollouts on.
+     */
+    public MonteCarloAI(boolean human, long budgetNanos, int numThreads) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("There must be at least one thread.");
+
+        this.human = human;
+        this.budgetNanos = budgetNanos;
+        this.numThreads = numThreads;
+        this.baseline = new InterceptAI(human);
+        this.pool = Executors.newFixedThreadPool(numThreads, new DaemonThreadFactory());
+    }
+
+
+
+    /**
+     * Tries out what each spindle could do, then does the best of it.
+     * @param state The state to update according to what the AI ends up doing.
+     */
+    @Override
+    public void doMoves(GameState state) {
+        if (this.workers.isEmpty()) {
+            for (int i = 0; i < this.numThreads; i++) {
+                this.workers.add(new Rollouts(state, this.human, i, this.numThreads));
+            }
+        }
+
+        long deadline = System.nanoTime() + this.budgetNanos;
+        for (Rollouts w : this.workers) {
+            w.prepare(state, deadline);
+        }
+
+        try {
+            this.pool.invokeAll(this.workers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        //Do what the InterceptAI would, then whatever extra came out best for each spindle
+        this.baseline.doMoves(state);
+        Spindle[] spindles = this.human ? state.getHumanSpindles() : state.getComputerSpindles();
+        this.numRollouts = 0;
+        for (int s = 0; s < spindles.length; s++) {
+            //Only do something extra if it actually came out better than doing nothing
+            int first = s * SpindleAction.NUM_ACTIONS;//The spindle's first candidate
+            int best = SpindleAction.NOTHING;
+            double bestValue = meanValue(first + SpindleAction.NOTHING);
+            for (int a = 0; a < SpindleAction.NUM_ACTIONS; a++) {
+                double value = (a == SpindleAction.NOTHING) ? bestValue : meanValue(first + a);
+                if (value > bestValue) {
+                    best = a;
+                    bestValue = value;
+                }
+            }
+
+            if (best != SpindleAction.NOTHING)
+                SpindleAction.apply(spindles[s], best, this.human);
+        }
+    }
+
+    /**
+     * Stops the threads that play the rollouts. The AI can't be used after this.
+     */
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+
+    /**
+     * Gets the number of rollouts that were played to make the last decision.
+     * @return The number of rollouts.
+     */
+    public int getNumRollouts() { return this.numRollouts; }
+
+
+
+    /**
+     * Works out the average value of a candidate over every worker's rollouts.
+     * Also counts the rollouts towards getNumRollouts().
+     * @param candidate The spindle times SpindleAction.NUM_ACTIONS plus the action.
+     * @return The average value, or negative infinity if it was never tried.
+     */
+    private double meanValue(int candidate) {
+        double total = 0.0;
+        int count = 0;
+        for (Rollouts w : this.workers) {
+            total += w.getTotal(candidate);
+            count += w.getCount(candidate);
+        }
+        this.numRollouts += count;
+
+        return (count > 0) ? (total / count) : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * One worker's share of the rollouts. Each worker has its own copy of the
+     * game to play forward and keeps its own totals, so the workers never
+     * share anything that changes.
+     */
+    private class Rollouts implements Callable<Void> {
+        private final GameState scratch;//The copy of the game that rollouts are played in
+        private final GameLogic logic;//Plays the copy forward
+        private final InterceptAI baseline;//Decides what the spindles do before the candidate is tried
+        private final boolean human;
+        private final int firstCandidate;//The candidate this worker starts with
+        private final int stride;//The number of candidates to skip between rollouts (so the workers share them out)
+        private final double[] totals;//The total value of the rollouts of each candidate
+        private final int[] counts;//The number of rollouts of each candidate
+        private GameState state;//The real game (only read)
+        private long deadline;//The System.nanoTime() to stop by
+
+        public Rollouts(GameState state, boolean human, int firstCandidate, int stride) {
+            this.scratch = new GameState(state.getSeed() + firstCandidate + 1);
+            this.scratch.initialize(state.getPanelWidth(), state.getPanelHeight());
+            this.human = human;
+            this.baseline = new InterceptAI(human);
+            this.logic = human ? new GameLogic(false, new GameAI(false), new InterceptAI(true))
+                    : new GameLogic(false, new InterceptAI(false), new GameAI(true));
+            this.logic.initialize(this.scratch);
+            this.firstCandidate = firstCandidate;
+            this.stride = stride;
+
+            int numSpindles = human ? state.getHumanSpindles().length : state.getComputerSpindles().length;
+            int numCandidates = numSpindles * SpindleAction.NUM_ACTIONS;
+            this.totals = new double[numCandidates];
+            this.counts = new int[numCandidates];
+        }
+
+        /**
+         * Gets ready for a new decision.
+         * @param state The real game.
+         * @param deadline The System.nanoTime() to stop by.
+         */
+        public void prepare(GameState state, long deadline) {
+            this.state = state;
+            this.deadline = deadline;
+            for (int i = 0; i < this.totals.length; i++) {
+                this.totals[i] = 0.0;
+                this.counts[i] = 0;
+            }
+        }
+
+        @Override
+        public Void call() {
+            int candidate = this.firstCandidate % this.totals.length;
+            while (System.nanoTime() < this.deadline) {
+                this.totals[candidate] += rollout(candidate);
+                this.counts[candidate]++;
+                candidate = (candidate + this.stride) % this.totals.length;
+            }
+            return null;
+        }
+
+        public double getTotal(int candidate) { return this.totals[candidate]; }
+        public int getCount(int candidate) { return this.counts[candidate]; }
+
+        /**
+         * Plays a copy of the game forward after trying out a candidate on
+         * top of what the InterceptAI would do.
+         * @param candidate The spindle times SpindleAction.NUM_ACTIONS plus the action.
+         * @return How well it went for this AI's side.
+         */
+        private double rollout(int candidate) {
+            GameState copy = this.scratch;
+            copy.copyFrom(this.state);
+            this.baseline.doMoves(copy);
+            Spindle[] spindles = this.human ? copy.getHumanSpindles() : copy.getComputerSpindles();
+            Spindle s = spindles[candidate / SpindleAction.NUM_ACTIONS];
+            SpindleAction.apply(s, candidate % SpindleAction.NUM_ACTIONS, this.human);
+
+            int humanScore = copy.getHumanScore();
+            int computerScore = copy.getComputerScore();
+            int start = copy.getElapsedTicks();
+            for (int t = 1; t <= ROLLOUT_TICKS; t++) {
+                this.logic.respondToTimerTick(start + t);
+                if ((copy.getHumanScore() != humanScore) || (copy.getComputerScore() != computerScore))
+                    break;//Somebody scored - no need to play on
+            }
+
+            //Goals count for the most, then how far the ball is up the table towards the opponent's goal (the human's is the left)
+            int goals = (copy.getHumanScore() - humanScore) - (copy.getComputerScore() - computerScore);
+            double progress = copy.getBall().isOffTable() ? 0.0 : copy.getTable().getCenterX() - copy.getBall().getPreciseX();
+            if (!this.human) {
+                goals = -goals;
+                progress = -progress;
+            }
+            return (GOAL_VALUE * goals) + progress;
+        }
+    }
+
+    /**
+     * Makes daemon threads, so that the rollout threads don't keep the game
+     * running after its window has closed.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private int numThreads = 0;
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Monte Carlo " + this.numThreads++);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
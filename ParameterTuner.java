@@ -0,0 +1,399 @@
+package fussball;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches for better TuningParameters with a genetic algorithm. Every
+ * generation, each set of parameters in the population plays a few headless
+ * matches against others drawn at random, half of them on each side of the
+ * table. The matches are spread over every core like a BatchSimulator's.
+ *
+ * Only the parameters of the AI itself (see EVOLVED) are searched: the
+ * physics and how often the AIs get a turn are the same for both sides of a
+ * match, so winning says nothing about whether they are any good, and they
+ * are left at their defaults. A set of parameters is fitter the more of its
+ * matches its AI wins. The fittest few go through to the next generation
+ * unchanged, and the rest of it is bred from winners of small tournaments.
+ *
+ * The results of every match are kept in flat int tables, and every
+ * generation is written to a checkpoint file, so a search that is stopped
+ * can be carried on from where it was.
+ * @author Max Strange
+ */
+public class ParameterTuner {
+    public static final String DEFAULT_CHECKPOINT_FILE_NAME = "tuning.checkpoint";
+    private static final int CHECKPOINT_MAGIC = 0x46545052;//"FTPR"
+    private static final int CHECKPOINT_VERSION = 2;
+    private final int MAX_TICKS = 20000;//The most ticks any one match may last
+    private final int CHUNKS_PER_THREAD = 4;//Split the work up a bit finer than one chunk per thread to even out the load
+    private final int ELITES = 2;//The number of the fittest that go through to the next generation unchanged
+    private final int TOURNAMENT_SIZE = 3;//The number drawn for each tournament to breed from
+    private final double MUTATION_RATE = 0.3;//The chance of each parameter being nudged when breeding
+    private static final boolean[] EVOLVED = {true, true, false, false, false, false, false};//Which parameters are searched (the AI's two)
+
+    /*
+    The results tables. Each has one int for every set of parameters in the
+    population, one table after another in one array.
+    */
+    private static final int WINS = 0;//The number of matches the parameters' AI won
+    private static final int PLAYED = 1;//The number of matches the parameters' AI played
+    private static final int NUM_TABLES = 2;
+
+    private final int numThreads;//The number of threads to play matches on
+    private final long seed;//The seed for the whole search
+
+    /**
+     * Constructor.
+     * @param numThreads The number of threads to play matches on.
+     * @param seed The seed for the whole search. Running the same search with
+     * the same seed gives the same results, no matter how many threads are
+     * used.
+     */
+    public ParameterTuner(int numThreads, long seed) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("There must be at least one thread.");
+
+        this.numThreads = numThreads;
+        this.seed = seed;
+    }
+
+
+
+    /**
+     * Runs the search. If the checkpoint file already exists, the search
+     * carries on from the generation in it.
+     * @param populationSize The number of sets of parameters in each
+     * generation (ignored when carrying on from a checkpoint).
+     * @param numGenerations The number of generations to search for in total.
+     * @param matchesPerMember The number of matches each set of parameters
+     * sets up every generation.
+     * @param checkpointFile The file to keep the latest generation in.
+     * @return The fittest parameters from the last generation.
+     * @throws InterruptedException Thrown if interrupted while playing.
+     * @throws IOException Thrown if the checkpoint can't be read or written.
+     */
+    public TuningParameters run(int populationSize, int numGenerations, int matchesPerMember,
+            String checkpointFile) throws InterruptedException, IOException {
+        if (populationSize < 2)
+            throw new IllegalArgumentException("There must be at least two sets of parameters to play each other.");
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+
+        try {
+            //Start from the checkpoint, or else from the defaults and a lot of random ones
+            TuningParameters[] population;
+            double[] fitness;
+            int generation;
+            if (new File(checkpointFile).exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+                    if ((in.readInt() != CHECKPOINT_MAGIC) || (in.readInt() != CHECKPOINT_VERSION)
+                            || (in.readInt() != TuningParameters.NUM_PARAMETERS))
+                        throw new IOException(checkpointFile + " is not a checkpoint from this version of the tuner.");
+
+                    generation = in.readInt();
+                    population = new TuningParameters[in.readInt()];
+                    fitness = new double[population.length];
+                    for (int i = 0; i < population.length; i++) {
+                        population[i] = TuningParameters.readFrom(in);
+                        fitness[i] = in.readDouble();
+                    }
+                }
+                System.out.println("Carrying on from generation " + generation);
+            } else {
+                SplittableRandom r = new SplittableRandom(this.seed);
+                population = new TuningParameters[populationSize];
+                population[0] = new TuningParameters();
+                for (int i = 1; i < populationSize; i++) {
+                    population[i] = TuningParameters.random(r, EVOLVED);
+                }
+                fitness = evaluate(pool, population, matchesPerMember, 0);
+                generation = 0;
+                saveCheckpoint(checkpointFile, generation, population, fitness);
+                printGeneration(generation, fitness);
+            }
+
+            while (generation + 1 < numGenerations) {
+                generation++;
+                population = breed(population, fitness, new SplittableRandom(this.seed + generation));
+                fitness = evaluate(pool, population, matchesPerMember, generation);
+                saveCheckpoint(checkpointFile, generation, population, fitness);
+                printGeneration(generation, fitness);
+            }
+
+            return population[fittest(fitness)];
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A simulated match failed.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+
+    /**
+     * Searches for better parameters, then prints and saves the best ones.
+     * @param args The number of sets of parameters in each generation
+     * (optional, defaults to 16), the number of generations (optional,
+     * defaults to 10), the number of matches each set sets up every generation
+     * (optional, defaults to 10), the number of threads to use (optional,
+     * defaults to every core), the checkpoint file (optional, defaults to
+     * DEFAULT_CHECKPOINT_FILE_NAME), the file to save the best parameters to
+     * (optional, defaults to TuningParameters.DEFAULT_FILE_NAME) and the seed
+     * (optional, defaults to a random one).
+     * @throws InterruptedException Thrown if interrupted while playing.
+     * @throws IOException Thrown if a file can't be read or written.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int populationSize = (args.length > 0) ? Integer.parseInt(args[0]) : 16;
+        int numGenerations = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        int matchesPerMember = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+        int numThreads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String checkpointFile = (args.length > 4) ? args[4] : DEFAULT_CHECKPOINT_FILE_NAME;
+        String outFile = (args.length > 5) ? args[5] : TuningParameters.DEFAULT_FILE_NAME;
+        long seed = (args.length > 6) ? Long.parseLong(args[6]) : new SplittableRandom().nextLong();
+
+        long start = System.nanoTime();
+        System.out.println("Seed: " + seed);
+        TuningParameters best = new ParameterTuner(numThreads, seed).run(populationSize, numGenerations,
+                matchesPerMember, checkpointFile);
+        best.save(outFile);
+
+        System.out.println("Seconds: " + ((double)(System.nanoTime() - start) / 1000000000.0));
+        System.out.println("Best parameters (written to " + outFile + "):");
+        System.out.print(best);
+    }
+
+
+
+    /**
+     * Plays a generation's matches and works out how fit each set of
+     * parameters is.
+     * @param pool The threads to play on.
+     * @param population The generation.
+     * @param matchesPerMember The number of matches each set sets up.
+     * @param generation The generation's number (which decides its matches).
+     * @return The fitness of each set of parameters.
+     * @throws InterruptedException Thrown if interrupted while playing.
+     * @throws ExecutionException Thrown if a match failed.
+     */
+    private double[] evaluate(ExecutorService pool, TuningParameters[] population, int matchesPerMember,
+            int generation) throws InterruptedException, ExecutionException {
+        //Draw every match up front, so that the matches don't depend on the threads
+        SplittableRandom r = new SplittableRandom(this.seed - generation - 1);
+        int numMatches = population.length * matchesPerMember;
+        int[] computer = new int[numMatches];//Whose AI plays the computer's side of each match
+        int[] human = new int[numMatches];//Whose AI plays the human's side
+        long[] matchSeeds = new long[numMatches];
+        for (int m = 0; m < numMatches; m++) {
+            int member = m / matchesPerMember;
+            int opponent = r.nextInt(population.length - 1);
+            if (opponent >= member)
+                opponent++;//Anyone but the member itself
+
+            boolean memberIsComputer = (m % 2) == 0;
+            computer[m] = memberIsComputer ? member : opponent;
+            human[m] = memberIsComputer ? opponent : member;
+            matchSeeds[m] = r.nextLong();
+        }
+
+        //Split the matches up into roughly equal chunks
+        int numChunks = Math.max(1, Math.min(numMatches, this.numThreads * CHUNKS_PER_THREAD));
+        List<Future<int[]>> chunks = new ArrayList<>();
+        int firstMatch = 0;
+        for (int i = 0; i < numChunks; i++) {
+            int chunkSize = (numMatches / numChunks) + ((i < (numMatches % numChunks)) ? 1 : 0);
+            chunks.add(pool.submit(new Worker(population, computer, human, matchSeeds,
+                    firstMatch, chunkSize, MAX_TICKS)));
+            firstMatch += chunkSize;
+        }
+
+        //Add up the results tables, then work out the fitness from them
+        int[] results = new int[NUM_TABLES * population.length];
+        for (Future<int[]> chunk : chunks) {
+            int[] c = chunk.get();
+            for (int i = 0; i < results.length; i++) {
+                results[i] += c[i];
+            }
+        }
+
+        double[] fitness = new double[population.length];
+        for (int i = 0; i < population.length; i++) {
+            fitness[i] = ratio(results[(WINS * population.length) + i], results[(PLAYED * population.length) + i]);
+        }
+        return fitness;
+    }
+
+    /**
+     * Breeds the next generation: the fittest go through unchanged, and the
+     * rest are crosses of tournament winners, mutated.
+     * @param population The generation.
+     * @param fitness The fitness of each set of parameters in it.
+     * @param r The random number generator to use.
+     * @return The next generation.
+     */
+    private TuningParameters[] breed(TuningParameters[] population, double[] fitness, SplittableRandom r) {
+        TuningParameters[] next = new TuningParameters[population.length];
+
+        //Pick the elites by repeatedly taking the fittest that hasn't been taken yet
+        boolean[] taken = new boolean[population.length];
+        int numElites = Math.min(ELITES, population.length);
+        for (int e = 0; e < numElites; e++) {
+            int best = -1;
+            for (int i = 0; i < population.length; i++) {
+                if (!taken[i] && ((best < 0) || (fitness[i] > fitness[best])))
+                    best = i;
+            }
+            taken[best] = true;
+            next[e] = population[best];
+        }
+
+        for (int i = numElites; i < next.length; i++) {
+            TuningParameters mother = population[tournament(fitness, r)];
+            TuningParameters father = population[tournament(fitness, r)];
+            next[i] = mother.crossWith(father, r).mutate(r, MUTATION_RATE, EVOLVED);
+        }
+        return next;
+    }
+
+    /**
+     * Draws a few of the population at random and picks the fittest of them.
+     * @param fitness The fitness of each set of parameters.
+     * @param r The random number generator to use.
+     * @return The index of the winner.
+     */
+    private int tournament(double[] fitness, SplittableRandom r) {
+        int best = r.nextInt(fitness.length);
+        for (int i = 1; i < TOURNAMENT_SIZE; i++) {
+            int challenger = r.nextInt(fitness.length);
+            if (fitness[challenger] > fitness[best])
+                best = challenger;
+        }
+        return best;
+    }
+
+    /**
+     * Writes a generation to the checkpoint file. It is written to a
+     * temporary file first, which then replaces the checkpoint in one step,
+     * so stopping part way through never loses the last checkpoint.
+     * @param fileName The checkpoint file.
+     * @param generation The generation's number.
+     * @param population The generation.
+     * @param fitness The fitness of each set of parameters in it.
+     * @throws IOException Thrown if the file can't be written.
+     */
+    private static void saveCheckpoint(String fileName, int generation, TuningParameters[] population,
+            double[] fitness) throws IOException {
+        File file = new File(fileName);
+        File temp = new File(fileName + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeInt(TuningParameters.NUM_PARAMETERS);
+            out.writeInt(generation);
+            out.writeInt(population.length);
+            for (int i = 0; i < population.length; i++) {
+                population[i].writeTo(out);
+                out.writeDouble(fitness[i]);
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Prints how a generation did.
+     * @param generation The generation's number.
+     * @param fitness The fitness of each set of parameters in it.
+     */
+    private static void printGeneration(int generation, double[] fitness) {
+        double total = 0.0;
+        for (double f : fitness) {
+            total += f;
+        }
+        System.out.println("Generation " + generation + ": best fitness " + fitness[fittest(fitness)]
+                + ", average " + (total / fitness.length));
+    }
+
+    /**
+     * Finds the fittest set of parameters.
+     * @param fitness The fitness of each set of parameters.
+     * @return The index of the fittest.
+     */
+    private static int fittest(double[] fitness) {
+        int best = 0;
+        for (int i = 1; i < fitness.length; i++) {
+            if (fitness[i] > fitness[best])
+                best = i;
+        }
+        return best;
+    }
+
+    private static double ratio(int count, int total) {
+        return (total > 0) ? ((double)count / total) : 0.0;
+    }
+
+
+
+    /**
+     * Plays some matches one after another and keeps the results tables to
+     * itself.
+     */
+    private static class Worker implements Callable<int[]> {
+        private final TuningParameters[] population;//Only read
+        private final int[] computer;
+        private final int[] human;
+        private final long[] matchSeeds;
+        private final int firstMatch;//The index of this worker's first match
+        private final int numMatches;
+        private final int maxTicks;
+
+        public Worker(TuningParameters[] population, int[] computer, int[] human, long[] matchSeeds,
+                int firstMatch, int numMatches, int maxTicks) {
+            this.population = population;
+            this.computer = computer;
+            this.human = human;
+            this.matchSeeds = matchSeeds;
+            this.firstMatch = firstMatch;
+            this.numMatches = numMatches;
+            this.maxTicks = maxTicks;
+        }
+
+        @Override
+        public int[] call() {
+            int n = this.population.length;
+            int[] results = new int[NUM_TABLES * n];
+
+            for (int m = this.firstMatch; m < this.firstMatch + this.numMatches; m++) {
+                HeadlessMatch match = new HeadlessMatch(this.matchSeeds[m],
+                        this.population[this.computer[m]].makeAI(false), this.population[this.human[m]].makeAI(true));
+                Score winner = match.play(this.maxTicks);
+
+                results[(PLAYED * n) + this.computer[m]]++;
+                results[(PLAYED * n) + this.human[m]]++;
+                if (winner == Score.COMPUTER)
+                    results[(WINS * n) + this.computer[m]]++;
+                else if (winner == Score.HUMAN)
+                    results[(WINS * n) + this.human[m]]++;
+            }
+
+            return results;
+        }
+    }
+}
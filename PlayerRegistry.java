@@ -0,0 +1,622 @@
+package fussball;
+
+import java.util.Arrays;
+
+/**
+ * A flat store of the state of every Player on the table. Instead of each
+ * Player object holding its own fields, the state is kept in primitive arrays
+ * indexed by player id, so going through all the players every tick is a
+ * tight loop over a few arrays. Player objects are just handles into here.
+ * Each Spindle (and each Team) owns a contiguous range of ids.
+ * @author Max Strange
+ */
+public class PlayerRegistry {
+    static final int HEAD_RADIUS = 15;
+    static final int LEG_LENGTH = 75;
+    private static final double OFFSET_Y = 3.0;//The proportion the ball will skew to the up or down when kicked
+    static final double DEFAULT_MOMENTUM_CHANGE = 5.0;//The change in momentum per arrow click (unless it is set otherwise)
+    static final double DEFAULT_MAX_MOMENTUM = 25.0;//The maximum momentum possible (unless it is set otherwise)
+    private static final int SNAPSHOT_LONGS_PER_PLAYER = 5;//y, previous y, orientation, momentum and time
+    private static final Orientation[] ORIENTATIONS = Orientation.values();//Cached so that lookups don't copy the array
+
+    /*
+    The orientations are stored as their ordinals. Orientation is declared in
+    clockwise order (DOWN, LEFT, UP, RIGHT), so rotating clockwise is adding
+    one and rotating counter clockwise is subtracting one (mod 4).
+    */
+    private static final int DOWN = Orientation.DOWN.ordinal();
+    private static final int LEFT = Orientation.LEFT.ordinal();
+    private static final int UP = Orientation.UP.ordinal();
+
+    private int size = 0;//The number of players in the registry
+    private int[] x;//The x location of each player (players only move up and down)
+    private int[] y;//The y location of each player
+    private int[] previousY;//The y location each player was one tick ago
+    private byte[] orientation;//The ordinal of each player's Orientation
+    private double[] momentum;//Negative means clockwise (curiously)
+    private int[] time;//The number of decays since the last time each player's momentum was changed by the user/computer
+    private double momentumChange = DEFAULT_MOMENTUM_CHANGE;//The change in momentum per rotation
+    private double maxMomentum = DEFAULT_MAX_MOMENTUM;//The maximum momentum possible
+    
+    /*
+    The broad phase. Players only ever move up and down, so every spindle is a
+    fixed column at some x value. Before doing the real (narrow phase) overlap
+    tests for a spindle's players, the ball's x value is checked against the
+    column - a ball further away than a leg and a head can't touch any of them.
+    */
+    private int numColumns = 0;//The number of spindle columns
+    private int[] columnX = new int[6];//The x value of each column
+    private int[] columnFirst = new int[6];//The id of the first player in each column
+    private int[] columnCount = new int[6];//The number of players in each column
+    private int lastNarrowPhaseTests = 0;//The number of narrow phase tests in the last call to collideAll
+    private long totalNarrowPhaseTests = 0;//The number of narrow phase tests since the registry was made
+    
+    //The results of the last call to sweep
+    private int lastHit = -1;//The id of the player the ball would hit first (or -1)
+    private double contactX;//Where the ball's center would be when it first touches that player
+    private double contactY;
+
+    /**
+     * Constructor.
+     * @param capacity The number of players to make room for up front (more
+     * room is made if more are added).
+     */
+    public PlayerRegistry(int capacity) {
+        this.x = new int[capacity];
+        this.y = new int[capacity];
+        this.previousY = new int[capacity];
+        this.orientation = new byte[capacity];
+        this.momentum = new double[capacity];
+        this.time = new int[capacity];
+    }
+
+
+
+    /**
+     * Adds a new player to the registry.
+     * @param x The x location of the center of the player's head.
+     * @param y The y location of the center of the player's head.
+     * @return The new player's id.
+     */
+    public int add(int x, int y) {
+        if (this.size == this.x.length)
+            grow();
+
+        int id = this.size++;
+        this.x[id] = x;
+        this.y[id] = y;
+        this.previousY[id] = y;
+        this.orientation[id] = (byte)DOWN;
+        this.momentum[id] = 0.0;
+        this.time[id] = 0;
+        return id;
+    }
+
+    /**
+     * Adds a column (a spindle's worth of players) to the broad phase.
+     * @param x The x value of the spindle.
+     * @param first The id of the first player on the spindle.
+     * @param count The number of players on the spindle.
+     */
+    public void addColumn(int x, int first, int count) {
+        if (this.numColumns == this.columnX.length) {
+            int capacity = this.columnX.length * 2;
+            this.columnX = Arrays.copyOf(this.columnX, capacity);
+            this.columnFirst = Arrays.copyOf(this.columnFirst, capacity);
+            this.columnCount = Arrays.copyOf(this.columnCount, capacity);
+        }
+        
+        this.columnX[this.numColumns] = x;
+        this.columnFirst[this.numColumns] = first;
+        this.columnCount[this.numColumns] = count;
+        this.numColumns++;
+    }
+    
+    /**
+     * Handles the collisions between every player and the ball. Only the
+     * players on spindles close enough to the ball are actually tested.
+     * @param ball The game ball.
+     */
+    public void collideAll(Ball ball) {
+        int reach = LEG_LENGTH + HEAD_RADIUS + ball.getRadius();
+        int ballX = ball.getX();
+        int tests = 0;
+        
+        //Go through the columns in the order they were added so that collisions resolve the same as testing everyone
+        for (int c = 0; c < this.numColumns; c++) {
+            if (Math.abs(ballX - this.columnX[c]) > reach)
+                continue;//Too far away to touch any of this spindle's players
+            
+            int first = this.columnFirst[c];
+            int end = first + this.columnCount[c];
+            for (int id = first; id < end; id++) {
+                collide(id, ball);
+            }
+            tests += this.columnCount[c];
+        }
+        
+        this.lastNarrowPhaseTests = tests;
+        this.totalNarrowPhaseTests += tests;
+    }
+
+    /**
+     * Works out whether the ball would run into a player if it moved by the
+     * given amount, and if so which one it would touch first and where. The
+     * ball touches a player when its center gets inside the player's body box
+     * or foot box (the same boxes collide checks for overlap). Players that
+     * the ball already overlaps are left out - collide deals with those.
+     * @param ball The game ball.
+     * @param dx How far the ball would move in the x direction.
+     * @param dy How far the ball would move in the y direction.
+     * @return The fraction of the movement at which the ball first touches a
+     * player, or 1.0 if it doesn't touch any. If it does, the player is
+     * given by getLastHit() and the point of contact by getContactX/Y().
+     */
+    public double sweep(Ball ball, double dx, double dy) {
+        double x0 = ball.getPreciseX();
+        double y0 = ball.getPreciseY();
+        int r = ball.getRadius();
+        int reach = LEG_LENGTH + HEAD_RADIUS + r;
+        double minX = Math.min(x0, x0 + dx) - reach;
+        double maxX = Math.max(x0, x0 + dx) + reach;
+        double first = 1.0;
+        this.lastHit = -1;
+        
+        for (int c = 0; c < this.numColumns; c++) {
+            if ((this.columnX[c] < minX) || (this.columnX[c] > maxX))
+                continue;//The ball doesn't go anywhere near this spindle
+            
+            int end = this.columnFirst[c] + this.columnCount[c];
+            for (int id = this.columnFirst[c]; id < end; id++) {
+                if (this.orientation[id] == UP)
+                    continue;//Feet are up - the ball passes right under the player
+                
+                int px = this.x[id];
+                int py = this.y[id];
+                
+                //The body
+                first = sweepBox(id, x0, y0, dx, dy, px - HEAD_RADIUS - r, px + HEAD_RADIUS + r,
+                        py - HEAD_RADIUS - r, py + HEAD_RADIUS + r, first);
+                
+                //The foot (only on the side of the body that it sticks out of)
+                int footX = getFootX(id);
+                double footLeft = (footX < px) ? footX - r : ((footX == px) ? px - r : px);
+                double footRight = (footX > px) ? footX + r : ((footX == px) ? px + r : px);
+                first = sweepBox(id, x0, y0, dx, dy, footLeft, footRight,
+                        py - (HEAD_RADIUS / 2.0) - r, py + (HEAD_RADIUS / 2.0) + r, first);
+            }
+        }
+        
+        return first;
+    }
+    
+    /**
+     * Handles the collisions between the Player's feet, head, and the ball.
+     * @param id The player's id.
+     * @param ball The game ball.
+     */
+    public void collide(int id, Ball ball) {
+        if (this.orientation[id] == UP)
+            return;//Feet are up - the ball passes right under the player
+
+        boolean collidedWithBody = false;
+
+        //If the ball overlaps the body, there is a collision of type body
+        if (overlapBodyAndBall(id, ball)) {
+            collideWithBody(id, ball);
+            collidedWithBody = true;
+        }
+
+        //If the ball overlaps the feet...
+        if (overlapFeetAndBall(id, ball)) {
+
+            //If the player's momentum is small enough, and a body collision has not already been calculated
+            if ((Math.abs(this.momentum[id]) < 2.0) && !collidedWithBody) {
+                collideWithBody(id, ball);
+            } else {//Otherwise (the momentum is high enough), collide with the feet (kick the ball)
+                ball.accelerateLeftRight(this.momentum[id]);//Kick left/right
+                maybeReflectY(id, ball);//Skew the ball's velocity up/down
+            }
+
+        }
+    }
+
+    /**
+     * Decays the momentum of every player.
+     */
+    public void decayAllMomentum() {
+        decayMomentum(0, this.size);
+    }
+
+    /**
+     * Decays the momentum of a range of players.
+     * @param first The id of the first player in the range.
+     * @param count The number of players in the range.
+     */
+    public void decayMomentum(int first, int count) {
+        for (int id = first; id < first + count; id++) {
+            this.time[id]++;
+            this.momentum[id] = this.momentum[id] / StrictMath.exp(this.time[id]);//StrictMath so replays come out exactly the same
+        }
+    }
+
+    /**
+     * Moves a range of players the given distance up or down.
+     * @param first The id of the first player in the range.
+     * @param count The number of players in the range.
+     * @param up If true, moves the players up. Otherwise moves them down.
+     * @param distance The distance the players move.
+     */
+    public void move(int first, int count, boolean up, int distance) {
+        int delta = up ? -distance : distance;
+        for (int id = first; id < first + count; id++) {
+            this.y[id] += delta;
+        }
+    }
+
+    /**
+     * Rotates a range of players clockwise or counter clockwise (changing
+     * their orientation).
+     * @param first The id of the first player in the range.
+     * @param count The number of players in the range.
+     * @param clockwise If true, rotates clockwise. Otherwise, rotates counter
+     * clockwise.
+     */
+    public void rotate(int first, int count, boolean clockwise) {
+        int step = clockwise ? 1 : 3;
+        for (int id = first; id < first + count; id++) {
+            this.orientation[id] = (byte)((this.orientation[id] + step) % 4);
+            increaseMomentum(id, clockwise);
+        }
+    }
+
+
+
+    /**
+     * Makes every player in this registry the same as the player with the same
+     * id in another registry. Nothing new is made - the arrays are copied
+     * straight across. Players never change their x value, so that isn't
+     * copied. How much momentum rotating gives (see setMomentum()) is.
+     * @param other The registry to copy. It must have the same players (the
+     * same number, added in the same order).
+     */
+    public void copyFrom(PlayerRegistry other) {
+        if (other.size != this.size)
+            throw new IllegalArgumentException("Can only copy a registry with the same number of players.");
+
+        System.arraycopy(other.y, 0, this.y, 0, this.size);
+        System.arraycopy(other.previousY, 0, this.previousY, 0, this.size);
+        System.arraycopy(other.orientation, 0, this.orientation, 0, this.size);
+        System.arraycopy(other.momentum, 0, this.momentum, 0, this.size);
+        System.arraycopy(other.time, 0, this.time, 0, this.size);
+        this.momentumChange = other.momentumChange;
+        this.maxMomentum = other.maxMomentum;
+    }
+
+    /**
+     * Sets how much momentum the players get from being rotated.
+     * @param momentumChange The change in momentum per rotation.
+     * @param maxMomentum The maximum momentum possible.
+     */
+    public void setMomentum(double momentumChange, double maxMomentum) {
+        if ((momentumChange <= 0.0) || (maxMomentum < momentumChange))
+            throw new IllegalArgumentException("The momentum change must be positive and no more than the maximum.");
+
+        this.momentumChange = momentumChange;
+        this.maxMomentum = maxMomentum;
+    }
+    public double getMomentumChange() { return this.momentumChange; }
+    public double getMaxMomentum() { return this.maxMomentum; }
+
+
+
+    /**
+     * Writes every player's state into a snapshot (see GameSnapshot). It is
+     * written an array at a time: every y value, then every previous y value,
+     * every orientation, every momentum and every time.
+     * @param data The snapshot's data.
+     * @param offset Where to start writing.
+     * @return Where the next thing should be written.
+     */
+    public int writeTo(long[] data, int offset) {
+        int n = this.size;
+        for (int id = 0; id < n; id++) {
+            data[offset + id] = this.y[id];
+            data[offset + n + id] = this.previousY[id];
+            data[offset + (2 * n) + id] = this.orientation[id];
+            data[offset + (3 * n) + id] = Double.doubleToRawLongBits(this.momentum[id]);
+            data[offset + (4 * n) + id] = this.time[id];
+        }
+        return offset + getSnapshotLength();
+    }
+
+    /**
+     * Reads every player's state back out of a snapshot written by writeTo.
+     * The snapshot must have been written from a registry with the same
+     * players.
+     * @param data The snapshot's data.
+     * @param offset Where to start reading.
+     * @return Where the next thing should be read from.
+     */
+    public int readFrom(long[] data, int offset) {
+        int n = this.size;
+        for (int id = 0; id < n; id++) {
+            this.y[id] = (int)data[offset + id];
+            this.previousY[id] = (int)data[offset + n + id];
+            this.orientation[id] = (byte)data[offset + (2 * n) + id];
+            this.momentum[id] = Double.longBitsToDouble(data[offset + (3 * n) + id]);
+            this.time[id] = (int)data[offset + (4 * n) + id];
+        }
+        return offset + getSnapshotLength();
+    }
+
+    /**
+     * Gets the number of longs the registry takes up in a snapshot.
+     * @return The snapshot length.
+     */
+    public int getSnapshotLength() { return SNAPSHOT_LONGS_PER_PLAYER * this.size; }
+
+
+
+    /**
+     * Gets the x value of the player's foot's location. The foot is always at
+     * the same y value as the player. If the player's orientation is UP,
+     * this will return -1, so make sure to check the orientation of the
+     * player before using this value.
+     * @param id The player's id.
+     * @return The x value of the player's foot, or -1 if the foot is
+     * in the air (orientation is UP).
+     */
+    public int getFootX(int id) {
+        int ori = this.orientation[id];
+        if (ori == DOWN)
+            return this.x[id];
+        else if (ori == UP)
+            return -1;
+        else if (ori == LEFT)
+            return this.x[id] - LEG_LENGTH;
+        else
+            return this.x[id] + LEG_LENGTH;
+    }
+    public int getX(int id) { return this.x[id]; }
+    public int getY(int id) { return this.y[id]; }
+    public int getPreviousY(int id) { return this.previousY[id]; }
+    public Orientation getOrientation(int id) { return ORIENTATIONS[this.orientation[id]]; }
+    public double getMomentum(int id) { return this.momentum[id]; }
+    public int size() { return this.size; }
+    public int getLastHit() { return this.lastHit; }
+    public double getContactX() { return this.contactX; }
+    public double getContactY() { return this.contactY; }
+    /**
+     * Gets the number of players that were actually tested against the ball
+     * in the last call to collideAll (the rest were culled by the broad phase).
+     * @return The number of narrow phase tests in the last tick.
+     */
+    public int getLastNarrowPhaseTests() { return this.lastNarrowPhaseTests; }
+    public long getTotalNarrowPhaseTests() { return this.totalNarrowPhaseTests; }
+
+
+
+    /**
+     * Accelerates the ball due to the movement up or down of the spindle.
+     * @param id The player's id.
+     * @param ball The game's ball
+     */
+    private void accelerateBallDueToMovement(int id, Ball ball) {
+        if (ball.getPreciseY() > this.previousY[id])//ball is below player, accelerate it up
+            ball.accelerateUpDown(true);
+        else
+            ball.accelerateUpDown(false);
+    }
+
+    /**
+     * Maybe reflect the ball's y velocity, depending on the ball and player's
+     * relative position.
+     * @param id The player's id.
+     * @param ball The ball
+     */
+    private void maybeReflectY(int id, Ball ball) {
+        //Adjust the y velocity proportionally to the difference between the y locations
+        ball.accelerateUpDown((ball.getPreciseY() - this.y[id]) * OFFSET_Y);
+    }
+
+    /**
+     * Checks for and returns whether or not the player's body overlaps with the
+     * ball.
+     * @param id The player's id.
+     * @param ball The game ball.
+     * @return Whether or not the player's body overlaps with the ball.
+     */
+    private boolean overlapBodyAndBall(int id, Ball ball) {
+        int bodyX = this.x[id];
+        int bodyY = this.y[id];
+        double ballX = ball.getPreciseX();
+        double ballY = ball.getPreciseY();
+
+        boolean insideXRange;
+        if (bodyX > ballX) {//Ball is to the left of the body
+            insideXRange = ((ballX + ball.getRadius()) >= (bodyX - HEAD_RADIUS));
+        } else {//Ball is to the right of the body
+            insideXRange = ((ballX - ball.getRadius()) <= (bodyX + HEAD_RADIUS));
+        }
+
+        boolean insideYRange;
+        if (bodyY > ballY) {//Ball is above the body
+            insideYRange = ((ballY + ball.getRadius()) >= (bodyY - HEAD_RADIUS));
+        } else {//Ball is below the body
+            insideYRange = ((ballY - ball.getRadius()) <= (bodyY + HEAD_RADIUS));
+        }
+
+        return insideXRange && insideYRange;
+    }
+
+    /**
+     * Checks for and returns whether or not the player's feet overlap with the
+     * ball.
+     * @param id The player's id.
+     * @param ball The game ball.
+     * @return Whether or not the player's feet overlap with the ball.
+     */
+    private boolean overlapFeetAndBall(int id, Ball ball) {
+        if (this.orientation[id] == UP)
+            return false;//Can't collide with feet that are in the air!
+
+        //Check for overlap (the foot is at the same y value as the body)
+        int footX = getFootX(id);
+        int bodyX = this.x[id];
+        int bodyY = this.y[id];
+        double ballX = ball.getPreciseX();
+        double ballY = ball.getPreciseY();
+
+        boolean insideXRange;
+        if (bodyX > ballX) {//Ball is to the left of the body
+            insideXRange = ((ballX + ball.getRadius() ) >= footX);
+        } else {//Ball is to the right of the body
+            insideXRange = ((ballX - ball.getRadius()) <= footX);
+        }
+
+        boolean insideYRange;
+        if (bodyY > ballY) {//Ball is above the body
+            insideYRange = ((ballY + ball.getRadius()) >= (bodyY - (HEAD_RADIUS / 2.0)));
+        } else {//Ball below the body
+            insideYRange = ((ballY - ball.getRadius()) <= (bodyY + (HEAD_RADIUS / 2.0)));
+        }
+
+        return insideXRange && insideYRange;
+    }
+
+    /**
+     * Collide with body.
+     * @param id The player's id.
+     * @param ball the ball.
+     */
+    private void collideWithBody(int id, Ball ball) {
+        //Reflect up/down left/right depending on relative position of centers
+        if (ball.getPreciseX() > this.x[id])
+            ball.reflectLeftRight(false);//RIGHT
+        else if (ball.getPreciseX() < this.x[id])
+            ball.reflectLeftRight(true);//LEFT
+
+        if (ball.getPreciseY() > this.y[id])
+            ball.reflectUpDown(true);//UP
+        else if (ball.getPreciseY() < this.y[id])
+            ball.reflectUpDown(false);//DOWN
+    }
+
+    /**
+     * Works out when the ball's center moving from (x0, y0) by (dx, dy) would
+     * enter the given box, and if that is before the earliest contact so far,
+     * records it as the new earliest contact.
+     * @param id The id of the player the box belongs to.
+     * @param x0 The starting x value of the ball's center.
+     * @param y0 The starting y value of the ball's center.
+     * @param dx How far the ball moves in the x direction.
+     * @param dy How far the ball moves in the y direction.
+     * @param left The left side of the box.
+     * @param right The right side of the box.
+     * @param top The top side of the box.
+     * @param bottom The bottom side of the box.
+     * @param first The earliest contact found so far.
+     * @return The earliest contact, including this box.
+     */
+    private double sweepBox(int id, double x0, double y0, double dx, double dy,
+            double left, double right, double top, double bottom, double first) {
+        if ((x0 >= left) && (x0 <= right) && (y0 >= top) && (y0 <= bottom))
+            return first;//Already inside - not a new contact
+        
+        double enter = 0.0;
+        double exit = 1.0;
+        boolean enterThroughSide = false;//Whether the ball comes in through the left or right side
+        double side = 0.0;//The x or y value of the side the ball comes in through
+        
+        if (dx == 0.0) {
+            if ((x0 < left) || (x0 > right))
+                return first;
+        } else {
+            double near = (dx > 0.0) ? left : right;
+            double far = (dx > 0.0) ? right : left;
+            double tNear = (near - x0) / dx;
+            double tFar = (far - x0) / dx;
+            if (tNear > enter) {
+                enter = tNear;
+                enterThroughSide = true;
+                side = near;
+            }
+            exit = Math.min(exit, tFar);
+        }
+        
+        if (dy == 0.0) {
+            if ((y0 < top) || (y0 > bottom))
+                return first;
+        } else {
+            double near = (dy > 0.0) ? top : bottom;
+            double far = (dy > 0.0) ? bottom : top;
+            double tNear = (near - y0) / dy;
+            double tFar = (far - y0) / dy;
+            if (tNear > enter) {
+                enter = tNear;
+                enterThroughSide = false;
+                side = near;
+            }
+            exit = Math.min(exit, tFar);
+        }
+        
+        if ((enter > exit) || (enter >= first))
+            return first;//Misses the box, or something else is hit sooner
+        
+        //Put the contact exactly on the side of the box so that collide sees the overlap
+        this.lastHit = id;
+        this.contactX = enterThroughSide ? side : x0 + (dx * enter);
+        this.contactY = enterThroughSide ? y0 + (dy * enter) : side;
+        return enter;
+    }
+    
+    /**
+     * Makes room for more players.
+     */
+    private void grow() {
+        int capacity = Math.max(1, this.x.length * 2);
+        this.x = Arrays.copyOf(this.x, capacity);
+        this.y = Arrays.copyOf(this.y, capacity);
+        this.previousY = Arrays.copyOf(this.previousY, capacity);
+        this.orientation = Arrays.copyOf(this.orientation, capacity);
+        this.momentum = Arrays.copyOf(this.momentum, capacity);
+        this.time = Arrays.copyOf(this.time, capacity);
+    }
+
+    /**
+     * Changes the momentum to be more clockwise or more counter clockwise,
+     * depending on the given argument.
+     * @param id The player's id.
+     * @param clockwise
+     */
+    private void increaseMomentum(int id, boolean clockwise) {
+        //Reset the time
+        this.time[id] = 0;
+
+        double m = this.momentum[id];
+        if (m < 0.0) {//Momentum is currently clockwise
+
+            //change it to be more clockwise, or else change it to be barely counter clockwise
+            m = clockwise ? m - this.momentumChange : this.momentumChange;
+
+            //Make sure the momentum doesn't go beyond the max
+            m = (m < ((-1.0) * this.maxMomentum)) ? (-1.0) * this.maxMomentum : m;
+
+        } else if (m > 0.0) {//Momentum is currently counter clockwise
+
+            //Change it to be more counter clockwise, or else change it to be barely clockwise
+            m = clockwise ? (-1.0) * this.momentumChange : m + this.momentumChange;
+
+            //Make sure the momentum doesn't go beyond the max
+            m = (m > this.maxMomentum) ? this.maxMomentum : m;
+
+        } else {//Momentum is currently 0.
+
+            //Set it to small amount above or below 0.0
+            m = clockwise ? (-1.0) * this.momentumChange : this.momentumChange;
+
+        }
+        this.momentum[id] = m;
+    }
+}
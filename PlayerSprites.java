@@ -0,0 +1,130 @@
+package fussball;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pictures of a player in each orientation and color. A player can only ever
+ * look one of a few ways, so each way is drawn once into an image, and
+ * drawing a player is then just copying the right image onto the screen.
+ * @author Max Strange
+ */
+public class PlayerSprites {
+    private static final Orientation[] ORIENTATIONS = Orientation.values();
+
+    private final GraphicsConfiguration config;//The screen the images are made for (null if there isn't one)
+    private final Map<Color, BufferedImage[]> sprites = new HashMap<>();//Each color's images, indexed by orientation ordinal
+    private final int[] originX = new int[ORIENTATIONS.length];//Where the center of the head is in each image
+    private final int originY;
+
+    /**
+     * Constructor.
+     * @param config The screen the sprites will be drawn on, so that they can
+     * be stored in the way that is fastest to draw there, or null if they will
+     * not be drawn on a screen.
+     */
+    public PlayerSprites(GraphicsConfiguration config) {
+        this.config = config;
+
+        //Leave room for the head on each side, or the leg on the side the foot sticks out
+        final int r = PlayerRegistry.HEAD_RADIUS;
+        final int legLength = PlayerRegistry.LEG_LENGTH;
+        for (Orientation o : ORIENTATIONS) {
+            this.originX[o.ordinal()] = ((o == Orientation.LEFT) ? legLength : r) + 1;
+        }
+        this.originY = r + 1;
+    }
+
+
+
+    /**
+     * Draws a player.
+     * @param g The Graphics object to draw with.
+     * @param color The color to draw the player.
+     * @param orientation The orientation of the player.
+     * @param x The x value of the center of the player's head.
+     * @param y The y value of the center of the player's head.
+     */
+    public void draw(Graphics g, Color color, Orientation orientation, int x, int y) {
+        BufferedImage[] images = this.sprites.get(color);
+        if (images == null) {
+            images = new BufferedImage[ORIENTATIONS.length];
+            for (Orientation o : ORIENTATIONS) {
+                images[o.ordinal()] = drawSprite(color, o);
+            }
+            this.sprites.put(color, images);
+        }
+
+        int i = orientation.ordinal();
+        g.drawImage(images[i], x - this.originX[i], y - this.originY, null);
+    }
+
+    /**
+     * Draws a player straight onto the graphics, without any images.
+     * @param g The Graphics object to draw with (already set to the player's color).
+     * @param orientation The orientation of the player.
+     * @param x The x value of the center of the player's head.
+     * @param y The y value of the center of the player's head.
+     */
+    public static void drawPlayer(Graphics g, Orientation orientation, int x, int y) {
+        final int headRadius = PlayerRegistry.HEAD_RADIUS;
+
+        //Draw head
+        if (orientation == Orientation.UP)
+            g.drawOval(x - headRadius, y - headRadius, headRadius * 2, headRadius * 2);
+        else
+            g.fillOval(x - headRadius, y - headRadius, headRadius * 2, headRadius * 2);
+
+        //Draw legs (from the foot to the top and bottom of the hip)
+        int footX = x;
+        if (orientation == Orientation.LEFT)
+            footX = x - PlayerRegistry.LEG_LENGTH;
+        else if (orientation == Orientation.RIGHT)
+            footX = x + PlayerRegistry.LEG_LENGTH;
+
+        if (orientation == Orientation.UP) {
+            //Don't paint the foot
+        } else {
+            g.drawLine(footX, y, x, y - headRadius);
+            g.drawLine(footX, y, x, y + headRadius);
+        }
+    }
+
+
+
+    /**
+     * Draws the image of a player in one color and orientation.
+     * @param color The color of the player.
+     * @param orientation The orientation of the player.
+     * @return The image, with everything but the player transparent.
+     */
+    private BufferedImage drawSprite(Color color, Orientation orientation) {
+        final int r = PlayerRegistry.HEAD_RADIUS;
+        int right = (orientation == Orientation.RIGHT) ? PlayerRegistry.LEG_LENGTH : r;
+        int width = this.originX[orientation.ordinal()] + right + 2;
+        int height = (2 * r) + 3;
+
+        //Every pixel is either the player or not, so there's no need for proper alpha (which is slower to draw)
+        BufferedImage sprite;
+        if (this.config != null)
+            sprite = this.config.createCompatibleImage(width, height, Transparency.BITMASK);
+        else
+            sprite = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D g = sprite.createGraphics();
+        try {
+            g.setColor(color);
+            drawPlayer(g, orientation, this.originX[orientation.ordinal()], this.originY);
+        } finally {
+            g.dispose();
+        }
+
+        return sprite;
+    }
+}
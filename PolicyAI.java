@@ -0,0 +1,47 @@
+package fussball;
+
+/**
+ * An AI that plays the computer's side straight out of a PolicyTable, so
+ * every decision is one prediction of the ball's path and then one lookup per
+ * spindle. A spindle that the table has no entry for does nothing.
+ * @author Max Strange
+ */
+public class PolicyAI implements AI {
+    private final PolicyTable table;
+    private BallPredictor predictor = null;//Where the ball will cross each spindle (made once the spindles exist)
+
+    /**
+     * Constructor.
+     * @param table The table to play from.
+     */
+    public PolicyAI(PolicyTable table) {
+        this.table = table;
+    }
+
+
+
+    /**
+     * Looks up and does what each of the computer's spindles should do.
+     * @param state The state to update according to what the AI ends up doing.
+     */
+    @Override
+    public void doMoves(GameState state) {
+        Ball ball = state.getBall();
+        if (ball.isOffTable())
+            return;//Nothing to play for until it comes back
+
+        Spindle[] spindles = state.getComputerSpindles();
+        if (spindles.length != this.table.getNumSpindles())
+            throw new IllegalStateException("The policy table is for a different number of spindles.");
+        if (this.predictor == null)
+            this.predictor = BallPredictor.forSpindles(spindles);
+
+        this.predictor.predict(ball, state.getTable());
+        for (int i = 0; i < spindles.length; i++) {
+            int key = PolicyTable.getKey(ball, spindles[i], this.predictor.getCrossingY(i), this.predictor.getCrossingTicks(i));
+            byte action = this.table.getAction(i, key);
+            if (action != PolicyTable.NO_ENTRY)
+                SpindleAction.apply(spindles[i], action, false);
+        }
+    }
+}
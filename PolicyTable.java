@@ -0,0 +1,203 @@
+package fussball;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A table of what the computer's spindles should do, worked out ahead of time
+ * (by a PolicyTableGenerator) so that playing from it costs one lookup per
+ * spindle. What a spindle should do is looked up by a key made from how far
+ * the ball is from the spindle, where and how soon it will cross the spindle
+ * (from a BallPredictor) compared to the player that can get nearest to
+ * there, how fast it is going across, and whether that player has the
+ * momentum to kick and which way it is facing.
+ * Each of these is cut up into a few buckets, and every combination of
+ * buckets has one entry for each spindle: a single byte holding a
+ * SpindleAction (or NO_ENTRY if the table doesn't say).
+ *
+ * The file is a header of ints (MAGIC, VERSION, the number of spindles and
+ * the number of keys) followed by the entries, spindle by spindle. It is
+ * memory mapped rather than read in, so loading it is instant and the
+ * entries are only read from the disk when they are first looked up.
+ * @author Max Strange
+ */
+public class PolicyTable {
+    public static final String DEFAULT_FILE_NAME = "policy.bin";
+    public static final byte NO_ENTRY = -1;//The entry for a key that never came up
+    private static final int MAGIC = 0x46504f4c;//"FPOL"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 16;//The length of the header in bytes
+
+    /*
+    The buckets. Most are a range of values cut up into equal buckets - anything
+    outside the range goes in the bucket at that end. The x distance is from the
+    spindle to the ball, the y distance is from the player that can get nearest
+    to where the ball will cross the spindle to there, and the velocity is in
+    pixels per tick. How soon the ball will cross is cut up by TICKS_BUCKET_ENDS.
+    The momentum is only whether the player can kick, and which way.
+    */
+    private static final int DX_BUCKETS = 8;
+    private static final double DX_RANGE = 200.0;
+    private static final int DY_BUCKETS = 15;//Odd, so that the middle bucket is lined up
+    private static final double DY_RANGE = 165.0;
+    private static final double[] TICKS_BUCKET_ENDS = {5.0, 15.0, 40.0};//Anything later (or never) is the last bucket
+    private static final int TICKS_BUCKETS = TICKS_BUCKET_ENDS.length + 1;
+    private static final int VX_BUCKETS = 4;
+    private static final double VX_RANGE = 40.0;
+    private static final double KICK_MOMENTUM = 2.0;//The least momentum a player can kick with
+    private static final int MOMENTUM_BUCKETS = 3;//Enough to kick towards the left, not enough to kick, enough to kick towards the right
+    private static final int ORIENTATION_BUCKETS = 4;
+    public static final int NUM_KEYS = DX_BUCKETS * DY_BUCKETS * TICKS_BUCKETS * VX_BUCKETS * MOMENTUM_BUCKETS * ORIENTATION_BUCKETS;
+
+    private final ByteBuffer entries;//The mapped entries (everything after the header)
+    private final int numSpindles;
+
+    /**
+     * Constructor. Maps a table file into memory.
+     * @param fileName The table file.
+     * @throws IOException Thrown if the file can't be read or isn't a table
+     * of the right version.
+     */
+    public PolicyTable(String fileName) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+                FileChannel channel = file.getChannel()) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if ((map.limit() < HEADER_LENGTH) || (map.getInt(0) != MAGIC))
+                throw new IOException(fileName + " is not a policy table.");
+            if ((map.getInt(4) != VERSION) || (map.getInt(12) != NUM_KEYS))
+                throw new IOException(fileName + " is a policy table from a different version of the game.");
+
+            this.numSpindles = map.getInt(8);
+            if (map.limit() != (HEADER_LENGTH + (this.numSpindles * NUM_KEYS)))
+                throw new IOException(fileName + " is cut short.");
+
+            map.position(HEADER_LENGTH);
+            this.entries = map.slice();//The mapping stays valid after the channel is closed
+        }
+    }
+
+
+
+    /**
+     * Looks up what a spindle should do.
+     * @param spindle The index of the spindle on its team.
+     * @param key The key (see getKey()).
+     * @return The SpindleAction, or NO_ENTRY if there isn't one.
+     */
+    public byte getAction(int spindle, int key) {
+        return this.entries.get((spindle * NUM_KEYS) + key);
+    }
+
+    public int getNumSpindles() { return this.numSpindles; }
+
+
+
+    /**
+     * Works out the key for a spindle in the current state of the game.
+     * @param ball The ball.
+     * @param s The spindle.
+     * @param crossingY Where the ball will cross the spindle (or stop).
+     * @param crossingTicks How many ticks until the ball crosses the spindle
+     * (infinite if it won't).
+     * @return The key.
+     */
+    public static int getKey(Ball ball, Spindle s, double crossingY, double crossingTicks) {
+        Player nearest = s.getNearestPlayer(crossingY);
+
+        int ticksBucket = 0;
+        while ((ticksBucket < TICKS_BUCKET_ENDS.length) && (crossingTicks >= TICKS_BUCKET_ENDS[ticksBucket])) {
+            ticksBucket++;
+        }
+
+        int key = bucket(ball.getPreciseX() - s.getX(), DX_RANGE, DX_BUCKETS);
+        key = (key * DY_BUCKETS) + bucket(crossingY - nearest.getY(), DY_RANGE, DY_BUCKETS);
+        key = (key * TICKS_BUCKETS) + ticksBucket;
+        key = (key * VX_BUCKETS) + bucket(ball.getVelocityX(), VX_RANGE, VX_BUCKETS);
+        key = (key * MOMENTUM_BUCKETS) + ((nearest.getMomentum() <= -KICK_MOMENTUM) ? 0
+                : ((nearest.getMomentum() >= KICK_MOMENTUM) ? 2 : 1));
+        key = (key * ORIENTATION_BUCKETS) + nearest.getOrientation().ordinal();
+        return key;
+    }
+
+    /**
+     * Works out a sensible action for a key that never came up while a table
+     * was being made: the same thing an InterceptAI would do, as near as the
+     * buckets can tell. Line up with where the ball will cross, wind up a
+     * kick if the ball is in reach or coming soon, and otherwise get the feet
+     * down to block.
+     * @param key The key.
+     * @return The SpindleAction.
+     */
+    public static int getDefaultAction(int key) {
+        int orientation = key % ORIENTATION_BUCKETS;
+        key /= ORIENTATION_BUCKETS;
+        key /= MOMENTUM_BUCKETS;
+        key /= VX_BUCKETS;
+        int ticksBucket = key % TICKS_BUCKETS;
+        key /= TICKS_BUCKETS;
+        double dy = bucketCenter(key % DY_BUCKETS, DY_RANGE, DY_BUCKETS);
+        key /= DY_BUCKETS;
+        double dx = bucketCenter(key, DX_RANGE, DX_BUCKETS);
+
+        double bucketHeight = (2.0 * DY_RANGE) / DY_BUCKETS;
+        int move = (dy < (-bucketHeight / 2.0)) ? SpindleAction.MOVE_UP
+                : ((dy > (bucketHeight / 2.0)) ? SpindleAction.MOVE_DOWN : SpindleAction.STAY);
+
+        boolean inReach = Math.abs(dx) <= PlayerRegistry.LEG_LENGTH;
+        boolean comingSoon = ticksBucket < 2;
+        boolean feetUp = orientation == Orientation.UP.ordinal();
+        int rotation = (inReach || comingSoon || feetUp) ? SpindleAction.ROTATE_TOWARDS : SpindleAction.NO_ROTATION;
+
+        return SpindleAction.of(move, rotation);
+    }
+
+    /**
+     * Writes a table file.
+     * @param fileName The file to write.
+     * @param actions The entries, spindle by spindle (NUM_KEYS for each).
+     * @throws IOException Thrown if the file can't be written.
+     */
+    public static void write(String fileName, byte[] actions) throws IOException {
+        if ((actions.length % NUM_KEYS) != 0)
+            throw new IllegalArgumentException("There must be NUM_KEYS entries for each spindle.");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(actions.length / NUM_KEYS);
+            out.writeInt(NUM_KEYS);
+            out.write(actions);
+        }
+    }
+
+
+
+    /**
+     * Works out which bucket a value goes in.
+     * @param value The value.
+     * @param range The buckets cover from -range to range.
+     * @param numBuckets The number of buckets.
+     * @return The bucket.
+     */
+    private static int bucket(double value, double range, int numBuckets) {
+        int b = (int)Math.floor(((value + range) / (2.0 * range)) * numBuckets);
+        return Math.max(0, Math.min(numBuckets - 1, b));
+    }
+
+    /**
+     * Works out the value in the middle of a bucket.
+     * @param bucket The bucket.
+     * @param range The buckets cover from -range to range.
+     * @param numBuckets The number of buckets.
+     * @return The value in the middle of the bucket.
+     */
+    private static double bucketCenter(int bucket, double range, int numBuckets) {
+        return (((bucket + 0.5) / numBuckets) * (2.0 * range)) - range;
+    }
+}
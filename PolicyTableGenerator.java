@@ -0,0 +1,231 @@
+package fussball;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds a PolicyTable by watching a MonteCarloAI play. Headless matches are
+ * played with the MonteCarloAI on the computer's side and the random GameAI
+ * on the human's, spread over every core like a BatchSimulator. Every time
+ * the MonteCarloAI makes a decision, the key for each spindle and what the
+ * spindle ended up doing are counted. The table is then whatever was done
+ * most of the time for each key, so a PolicyAI plays like the MonteCarloAI
+ * without any of the rollouts. Keys that hardly came up (or where the
+ * MonteCarloAI couldn't make up its mind) get PolicyTable's default action
+ * instead, which plays like an InterceptAI.
+ * @author Max Strange
+ */
+public class PolicyTableGenerator {
+    private static final int NUM_SPINDLES = 3;//Every team has three spindles
+    private static final int MIN_SAMPLES = 20;//How many decisions a key needs before what was done there beats its default
+    private final int MAX_TICKS = 20000;//The most ticks any one match may last
+
+    private final int numThreads;//The number of threads to play matches on
+    private final long budgetNanos;//The MonteCarloAI's time budget for each decision
+    private final long seed;//The seed that every match's seed is drawn from
+
+    /**
+     * Constructor.
+     * @param numThreads The number of threads to play matches on.
+     * @param budgetNanos The MonteCarloAI's time budget for each decision.
+     * @param seed The seed for the matches.
+     */
+    public PolicyTableGenerator(int numThreads, long budgetNanos, long seed) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("There must be at least one thread.");
+
+        this.numThreads = numThreads;
+        this.budgetNanos = budgetNanos;
+        this.seed = seed;
+    }
+
+
+
+    /**
+     * Plays the given number of matches and builds a table from them.
+     * @param numMatches The number of matches to play.
+     * @return The table's entries, ready for PolicyTable.write().
+     * @throws InterruptedException Thrown if interrupted while waiting for the
+     * matches to finish.
+     */
+    public byte[] run(int numMatches) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+
+        try {
+            SplittableRandom seeds = new SplittableRandom(this.seed);
+            List<Future<int[]>> workers = new ArrayList<>();
+            for (int i = 0; i < this.numThreads; i++) {
+                int share = (numMatches / this.numThreads) + ((i < (numMatches % this.numThreads)) ? 1 : 0);
+                workers.add(pool.submit(new Worker(seeds.split(), share, this.budgetNanos, MAX_TICKS)));
+            }
+
+            //Add up the counts, then pick the most common action for every key
+            int[] counts = null;
+            for (Future<int[]> worker : workers) {
+                int[] c = worker.get();
+                if (counts == null) {
+                    counts = c;
+                } else {
+                    for (int i = 0; i < counts.length; i++) {
+                        counts[i] += c[i];
+                    }
+                }
+            }
+            return mostCommonActions(counts);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A simulated match failed.", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+
+    /**
+     * Builds a policy table and writes it to a file.
+     * @param args The number of matches to play (optional, defaults to 200),
+     * the MonteCarloAI's time budget in milliseconds (optional, defaults to
+     * 2), the number of threads to use (optional, defaults to every core),
+     * the file to write (optional, defaults to PolicyTable.DEFAULT_FILE_NAME)
+     * and the seed (optional, defaults to a random one).
+     * @throws InterruptedException Thrown if interrupted while playing.
+     * @throws IOException Thrown if the table can't be written.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int numMatches = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        long budgetNanos = (args.length > 1) ? Long.parseLong(args[1]) * 1000000L : 2000000L;
+        int numThreads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        String fileName = (args.length > 3) ? args[3] : PolicyTable.DEFAULT_FILE_NAME;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+
+        long start = System.nanoTime();
+        byte[] actions = new PolicyTableGenerator(numThreads, budgetNanos, seed).run(numMatches);
+        PolicyTable.write(fileName, actions);
+
+        System.out.println("Seed: " + seed);
+        System.out.println("Entries: " + actions.length);
+        System.out.println("Seconds: " + ((double)(System.nanoTime() - start) / 1000000000.0));
+        System.out.println("Written to " + fileName);
+    }
+
+
+
+    /**
+     * Picks the most common action for every key.
+     * @param counts The number of times each action was done for each key.
+     * @return The most common action for each key, or the key's default
+     * action (see PolicyTable.getDefaultAction()) if the key hardly came up
+     * or no one action was done there most of the time.
+     */
+    private static byte[] mostCommonActions(int[] counts) {
+        byte[] actions = new byte[counts.length / SpindleAction.NUM_ACTIONS];
+        for (int i = 0; i < actions.length; i++) {
+            int best = 0;
+            int bestCount = 0;
+            int total = 0;
+            for (int a = 0; a < SpindleAction.NUM_ACTIONS; a++) {
+                int count = counts[(i * SpindleAction.NUM_ACTIONS) + a];
+                total += count;
+                if (count > bestCount) {
+                    best = a;
+                    bestCount = count;
+                }
+            }
+            //A handful of noisy decisions is worse than the default, so only trust a clear majority
+            if ((total < MIN_SAMPLES) || ((2 * bestCount) <= total))
+                best = PolicyTable.getDefaultAction(i % PolicyTable.NUM_KEYS);
+            actions[i] = (byte)best;
+        }
+        return actions;
+    }
+
+
+
+    /**
+     * Plays some matches one after another and counts what the MonteCarloAI
+     * did, keeping the counts to itself.
+     */
+    private static class Worker implements Callable<int[]> {
+        private final SplittableRandom seeds;//This worker's own seeds
+        private final int numMatches;
+        private final long budgetNanos;
+        private final int maxTicks;
+
+        public Worker(SplittableRandom seeds, int numMatches, long budgetNanos, int maxTicks) {
+            this.seeds = seeds;
+            this.numMatches = numMatches;
+            this.budgetNanos = budgetNanos;
+            this.maxTicks = maxTicks;
+        }
+
+        @Override
+        public int[] call() {
+            MonteCarloAI teacher = new MonteCarloAI(false, this.budgetNanos, 1);
+            Recorder recorder = new Recorder(teacher);
+
+            try {
+                for (int i = 0; i < this.numMatches; i++) {
+                    HeadlessMatch match = new HeadlessMatch(this.seeds.nextLong(), recorder, new GameAI(true));
+                    match.play(this.maxTicks);
+                }
+            } finally {
+                teacher.shutdown();
+            }
+
+            return recorder.getCounts();
+        }
+    }
+
+    /**
+     * Plays the computer's side with another AI, counting what that AI has
+     * each spindle do for each key.
+     */
+    private static class Recorder implements AI {
+        private final AI teacher;
+        private BallPredictor predictor = null;//Where the ball will cross each spindle (made once the spindles exist)
+        private final int[] counts;//The number of times each action was done for each spindle and key
+        private final int[] keys = new int[NUM_SPINDLES];//The key for each spindle before the teacher moved
+        private final int[] topY = new int[NUM_SPINDLES];//Where each spindle was
+        private final Orientation[] orientation = new Orientation[NUM_SPINDLES];//Which way each spindle faced
+
+        public Recorder(AI teacher) {
+            this.teacher = teacher;
+            this.counts = new int[NUM_SPINDLES * PolicyTable.NUM_KEYS * SpindleAction.NUM_ACTIONS];
+        }
+
+        @Override
+        public void doMoves(GameState state) {
+            Spindle[] spindles = state.getComputerSpindles();
+            Ball ball = state.getBall();
+            boolean record = !ball.isOffTable();
+            if (this.predictor == null)
+                this.predictor = BallPredictor.forSpindles(spindles);
+
+            this.predictor.predict(ball, state.getTable());
+            for (int i = 0; i < spindles.length; i++) {
+                this.keys[i] = PolicyTable.getKey(ball, spindles[i], this.predictor.getCrossingY(i), this.predictor.getCrossingTicks(i));
+                this.topY[i] = spindles[i].getTopY();
+                this.orientation[i] = spindles[i].getPlayers()[0].getOrientation();
+            }
+
+            this.teacher.doMoves(state);
+            if (!record)
+                return;
+
+            for (int i = 0; i < spindles.length; i++) {
+                int action = SpindleAction.observe(spindles[i], this.topY[i], this.orientation[i], false);
+                int entry = (i * PolicyTable.NUM_KEYS) + this.keys[i];
+                this.counts[(entry * SpindleAction.NUM_ACTIONS) + action]++;
+            }
+        }
+
+        public int[] getCounts() { return this.counts; }
+    }
+}
@@ -0,0 +1,178 @@
+package fussball;
+
+/**
+ * Everything the GUI draws that can change, as it was at the end of one
+ * simulation step. The simulation thread fills these in and the GUI draws in
+ * between the last two of them, so the GUI never has to read the GameState
+ * while it is being changed, and can draw smoothly at whatever rate it likes.
+ * The things that can't be drawn in between (the scores, say) are drawn as
+ * they were in the latest frame.
+ * @author Max Strange
+ */
+public class RenderFrame {
+    private long time;//The System.nanoTime() the step was due at
+    private int ballX;//The x location of the ball
+    private int ballY;//The y location of the ball
+    private boolean ballOffTable;//Whether the ball was off the table
+    private final int[] spindleTopY;//The y value of the top of each spindle (in GameState.getAllSpindles() order)
+    private final Orientation[] spindleOrientation;//The orientation of the players on each spindle
+    private final boolean[] spindleSelected;//Whether each spindle was selected
+    private int elapsedTicks;//The number of ticks so far
+    private double elapsedTime;//The elapsed time of the game in seconds
+    private int humanScore;
+    private int computerScore;
+    private boolean leftGoalLit;//Whether the left goal was lit up
+    private boolean rightGoalLit;//Whether the right goal was lit up
+
+    /**
+     * Constructor.
+     * @param numSpindles The number of spindles on the table.
+     */
+    public RenderFrame(int numSpindles) {
+        this.spindleTopY = new int[numSpindles];
+        this.spindleOrientation = new Orientation[numSpindles];
+        this.spindleSelected = new boolean[numSpindles];
+    }
+
+
+
+    /**
+     * Fills in the frame from the state of the game.
+     * @param state The state of the game.
+     * @param time The System.nanoTime() that the step was due at.
+     */
+    public void capture(GameState state, long time) {
+        Ball ball = state.getBall();
+        Spindle[] spindles = state.getAllSpindles();
+
+        this.time = time;
+        this.ballX = ball.getX();
+        this.ballY = ball.getY();
+        this.ballOffTable = ball.isOffTable();
+        for (int i = 0; i < this.spindleTopY.length; i++) {
+            this.spindleTopY[i] = spindles[i].getTopY();
+            this.spindleOrientation[i] = spindles[i].getPlayers()[0].getOrientation();//They all turn together
+            this.spindleSelected[i] = spindles[i].isSelected();
+        }
+        this.elapsedTicks = state.getElapsedTicks();
+        this.elapsedTime = state.getElapsedTime();
+        this.humanScore = state.getHumanScore();
+        this.computerScore = state.getComputerScore();
+        this.leftGoalLit = state.getLeftGoal().isLitUp();
+        this.rightGoalLit = state.getRightGoal().isLitUp();
+    }
+
+    /**
+     * Makes this frame a copy of the other one.
+     * @param other The frame to copy.
+     */
+    public void copyFrom(RenderFrame other) {
+        this.time = other.time;
+        this.ballX = other.ballX;
+        this.ballY = other.ballY;
+        this.ballOffTable = other.ballOffTable;
+        System.arraycopy(other.spindleTopY, 0, this.spindleTopY, 0, this.spindleTopY.length);
+        System.arraycopy(other.spindleOrientation, 0, this.spindleOrientation, 0, this.spindleOrientation.length);
+        System.arraycopy(other.spindleSelected, 0, this.spindleSelected, 0, this.spindleSelected.length);
+        this.elapsedTicks = other.elapsedTicks;
+        this.elapsedTime = other.elapsedTime;
+        this.humanScore = other.humanScore;
+        this.computerScore = other.computerScore;
+        this.leftGoalLit = other.leftGoalLit;
+        this.rightGoalLit = other.rightGoalLit;
+    }
+    
+    /**
+     * Checks whether the ball is in the same place in both frames.
+     * @param other The other frame.
+     * @return True if the ball is in the same place (or off the table in both).
+     */
+    public boolean ballMatches(RenderFrame other) {
+        if (this.ballOffTable || other.ballOffTable)
+            return this.ballOffTable == other.ballOffTable;
+        
+        return (this.ballX == other.ballX) && (this.ballY == other.ballY);
+    }
+    
+    /**
+     * Checks whether the given spindle looks the same in both frames (same
+     * place, same orientation and selected or not).
+     * @param other The other frame.
+     * @param spindle The index of the spindle (in GameState.getAllSpindles() order).
+     * @return True if the spindle looks the same.
+     */
+    public boolean spindleMatches(RenderFrame other, int spindle) {
+        return (this.spindleTopY[spindle] == other.spindleTopY[spindle])
+                && (this.spindleOrientation[spindle] == other.spindleOrientation[spindle])
+                && (this.spindleSelected[spindle] == other.spindleSelected[spindle]);
+    }
+
+    /**
+     * Gets the x location of the ball somewhere between the previous frame
+     * and this one.
+     * @param previous The frame before this one.
+     * @param alpha How far between the frames (0.0 is the previous frame, 1.0
+     * is this one).
+     * @return The interpolated x location of the ball.
+     */
+    public int getBallX(RenderFrame previous, double alpha) {
+        if (previous.ballOffTable || this.ballOffTable)
+            return this.ballX;//The ball jumped - don't draw it sliding across the table
+
+        return interpolate(previous.ballX, this.ballX, alpha);
+    }
+
+    /**
+     * Gets the y location of the ball somewhere between the previous frame
+     * and this one.
+     * @param previous The frame before this one.
+     * @param alpha How far between the frames (0.0 is the previous frame, 1.0
+     * is this one).
+     * @return The interpolated y location of the ball.
+     */
+    public int getBallY(RenderFrame previous, double alpha) {
+        if (previous.ballOffTable || this.ballOffTable)
+            return this.ballY;//The ball jumped - don't draw it sliding across the table
+
+        return interpolate(previous.ballY, this.ballY, alpha);
+    }
+
+    /**
+     * Gets the top of the given spindle somewhere between the previous frame
+     * and this one.
+     * @param previous The frame before this one.
+     * @param alpha How far between the frames (0.0 is the previous frame, 1.0
+     * is this one).
+     * @param spindle The index of the spindle (in GameState.getAllSpindles() order).
+     * @return The interpolated y value of the top of the spindle.
+     */
+    public int getSpindleTopY(RenderFrame previous, double alpha, int spindle) {
+        return interpolate(previous.spindleTopY[spindle], this.spindleTopY[spindle], alpha);
+    }
+
+    public long getTime() { return this.time; }
+    public int getBallX() { return this.ballX; }
+    public int getBallY() { return this.ballY; }
+    public boolean isBallOffTable() { return this.ballOffTable; }
+    public Orientation getSpindleOrientation(int spindle) { return this.spindleOrientation[spindle]; }
+    public boolean isSpindleSelected(int spindle) { return this.spindleSelected[spindle]; }
+    public int getElapsedTicks() { return this.elapsedTicks; }
+    public double getElapsedTime() { return this.elapsedTime; }
+    public int getHumanScore() { return this.humanScore; }
+    public int getComputerScore() { return this.computerScore; }
+    public boolean isLeftGoalLit() { return this.leftGoalLit; }
+    public boolean isRightGoalLit() { return this.rightGoalLit; }
+
+
+
+    /**
+     * Interpolates linearly between two values.
+     * @param from The value when alpha is 0.0.
+     * @param to The value when alpha is 1.0.
+     * @param alpha How far between the two values.
+     * @return The interpolated value, rounded.
+     */
+    private static int interpolate(int from, int to, double alpha) {
+        return (int)(from + ((to - from) * alpha) + 0.5);
+    }
+}
@@ -1,15 +1,10 @@
 package fussball;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Collections;
 
 /**
  *A class to actually manipulate the high score file so that the GUI doesn't
@@ -17,7 +12,9 @@ import java.util.Collections;
  * @author Max Strange
  */
 public class ScoreFileManager {
-    public static final String SCORE_FILE_NAME = "highScores.txt";
+    public static final String SCORE_FILE_NAME = "highScores.dat";
+    public static final String TEXT_SCORE_FILE_NAME = "highScores.txt";//The old text high score file, which is moved into SCORE_FILE_NAME the first time it's needed
+    public static final String JOURNAL_FILE_NAME = SCORE_FILE_NAME + Leaderboard.JOURNAL_SUFFIX;
     public static final int NUMBER_OF_SCORES_TO_SAVE = 10;
     
     private static final String[] EXAMPLE_SCORES =
@@ -27,26 +24,26 @@ public class ScoreFileManager {
         "Batman: 789"
     };
     
+    private static Leaderboard leaderboard = null;//Opened the first time it's needed, and kept open (its file stays mapped) from then on - see HighScoreFile
+    
     
     /**
-     * Creates a new high score file in the current directory.
+     * Creates a new high score file in the current directory, or empties the
+     * one that is open (which can't be replaced while it is mapped), and
+     * fills it with the example scores.
      * @throws java.io.IOException Throws an IOException when creating a new
      * file fails.
      */
-    public static void createNewHighScoreFile() throws IOException {
-        File f = new File(SCORE_FILE_NAME);
-        f.createNewFile();
-        
-        HighScore[] toWrite = new HighScore[NUMBER_OF_SCORES_TO_SAVE];
-        for (int i = 0; i < toWrite.length; i++) {
-            toWrite[i] = new HighScore(EXAMPLE_SCORES[i]);
-        }
-        
-        writeToFile(toWrite);
+    public static synchronized void createNewHighScoreFile() throws IOException {
+        if (leaderboard == null)
+            leaderboard = open(HighScoreFile.create(SCORE_FILE_NAME, NUMBER_OF_SCORES_TO_SAVE));
+        else
+            leaderboard.clear();
+        addExampleScores(leaderboard);
     }
     
     /**
-     * Attempts to get all the high scores from the high score file.
+     * Gets all the high scores from the high score file, best first.
      * @return The list of high scores and their corresponding names as strings
      * of the form "Name: SCORE".
      * @throws java.io.FileNotFoundException Throws a FileNotFoundException in
@@ -55,31 +52,13 @@ public class ScoreFileManager {
      * in the IO operation.
      */
     public static ArrayList<String> getAllScores() throws FileNotFoundException, IOException {
-        File file = new File(SCORE_FILE_NAME);
-        FileInputStream fis = new FileInputStream(file);
-        BufferedInputStream bis = new BufferedInputStream(fis);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(bis));
-        
-        ArrayList<String> listOfScores = new ArrayList<>();
-        boolean keepReading = true;
-        while (keepReading) {
-            String line = reader.readLine();
-            if (line == null)
-                keepReading = false;
-            else
-                listOfScores.add(line);        
-        }
-
-        fis.close();
-        bis.close();
-        reader.close();
-        
-        return listOfScores;
+        return getLeaderboard().getScores();
     }
     
     /**
      * Checks whether the given score should go in the high score file, and
-     * if so, adds it.
+     * if so, adds it (see Leaderboard - it is journaled straight away and put
+     * in the file in place later).
      * @param name The name of the person to put into the file with the score
      * @param score The score to potentially add to the file.
      * @throws FileNotFoundException Thrown if the high score file is not found
@@ -87,35 +66,18 @@ public class ScoreFileManager {
      * operations.
      */
     public static void maybeAddNewHighScore(String name, double score) throws FileNotFoundException, IOException {
-        ArrayList<String> scoresAsStrings = getAllScores();
-        ArrayList<HighScore> scoresAsScores = new ArrayList<>();
-        
-        //if there aren't enough scores, something is wrong - replace the score file with the example scores
-        if (scoresAsStrings.size() < NUMBER_OF_SCORES_TO_SAVE) {
-            for (String s : EXAMPLE_SCORES) {
-                scoresAsStrings.add(s);
-            }
-        }
-        
-        //Parse the strings into high score objects
-        for (String s : scoresAsStrings) {
-            HighScore hs = new HighScore(s);
-            scoresAsScores.add(hs);
-        }
-        
-        HighScore userScore = new HighScore(name, score);
-        
-        //Add the user's score, sort the list of scores, then take the first 10
-        scoresAsScores.add(userScore);
-        Collections.sort(scoresAsScores);
-        
-        //Take the first 10 and write them to the file
-        HighScore[] listOfScoresToSave = new HighScore[NUMBER_OF_SCORES_TO_SAVE];
-        for (int i = 0; i < NUMBER_OF_SCORES_TO_SAVE; i++) {
-            listOfScoresToSave[i] = scoresAsScores.get(i);
-        }
-        
-        writeToFile(listOfScoresToSave);
+        getLeaderboard().record(name, score);
+    }
+    
+    /**
+     * Makes sure every high score is in the high score file and written to
+     * the disk. The file stays open, since its mapping can't be let go of
+     * anyway.
+     * @throws IOException Thrown if the journal can't be emptied.
+     */
+    public static synchronized void flushScoreFile() throws IOException {
+        if (leaderboard != null)
+            leaderboard.flush();
     }
     
     
@@ -123,73 +85,51 @@ public class ScoreFileManager {
     
     
     /**
-     * Writes the given scores to the file, overwriting anything that was
-     * previously in the file.
-     * @param scoresToSave The scores to save in the file.
-     * @throws Throws an IOException in case something unforseen happens while
-     * writing the file.
+     * Gets the leaderboard, opening the high score file the first time. If
+     * there isn't one yet but there is an old text high score file, that is
+     * moved into a new one.
+     * @return The leaderboard.
+     * @throws FileNotFoundException Thrown if neither high score file is found
+     * @throws IOException Thrown if the file can't be read.
      */
-    private static void writeToFile(HighScore[] scoresToSave) throws IOException {
-        FileWriter writer = new FileWriter(SCORE_FILE_NAME);
-        
-        for (int i = 0; i < scoresToSave.length; i++) {
-            //Don't write more than the maximum number of scores to save
-            if (i > NUMBER_OF_SCORES_TO_SAVE)
-                break;
+    private static synchronized Leaderboard getLeaderboard() throws FileNotFoundException, IOException {
+        if (leaderboard == null) {
+            Leaderboard l;
+            if (!new File(SCORE_FILE_NAME).exists() && new File(TEXT_SCORE_FILE_NAME).exists())
+                l = open(HighScoreFile.migrate(TEXT_SCORE_FILE_NAME, SCORE_FILE_NAME, NUMBER_OF_SCORES_TO_SAVE));
+            else
+                l = new Leaderboard(new HighScoreFile(SCORE_FILE_NAME), JOURNAL_FILE_NAME);
             
-            String str = scoresToSave[i].toString();
-            writer.write(str);
-            writer.write(System.getProperty("line.separator"));
+            //if there aren't enough scores, something is wrong - fill the rest with the example scores
+            if (l.getNumScores() < NUMBER_OF_SCORES_TO_SAVE)
+                addExampleScores(l);
+            leaderboard = l;
         }
-        
-        writer.close();
+        return leaderboard;
     }
     
+    /**
+     * Opens the leaderboard over a high score file that was just made. Any
+     * journal that is lying around belongs to the file it replaced, so it is
+     * thrown away first.
+     * @param f The new file.
+     * @return The leaderboard.
+     * @throws IOException Thrown if the journal can't be deleted or made.
+     */
+    private static Leaderboard open(HighScoreFile f) throws IOException {
+        Files.deleteIfExists(new File(JOURNAL_FILE_NAME).toPath());
+        return new Leaderboard(f, JOURNAL_FILE_NAME);
+    }
     
-    
-    private static class HighScore implements Comparable<HighScore> {
-        private final double score;
-        private final String name;
-        
-        public HighScore(String name, double score) {
-            this.score = score;
-            this.name = name;
-        }
-
-        /**
-         * Constructor for parsing a string of the form "Name: SCORE" into a
-         * HighScore object.
-         * @param toParse The string to parse.
-         */
-        public HighScore(String toParse) throws IllegalArgumentException {
-            String[] parsed = toParse.split(":");
-            if (parsed.length != 2) {
-                throw new IllegalArgumentException("The given string is not of"
-                        + " the form 'NAME: SCORE'");
-            } else {
-                this.name = parsed[0];
-                this.score = Double.parseDouble(parsed[1]);
-            }
-        }
-        
-        @Override
-        public int compareTo(HighScore other) {
-            if (this.score < other.getScore())
-                return -1;
-            else if (this.score > other.getScore())
-                return 1;
-            else
-                return 0;
-        }
-        
-        @Override
-        public String toString() {
-            return this.name + ": " + this.score;
+    /**
+     * Adds the example scores to the leaderboard.
+     * @param l The leaderboard.
+     * @throws IOException Thrown if they can't be journaled.
+     */
+    private static void addExampleScores(Leaderboard l) throws IOException {
+        for (String s : EXAMPLE_SCORES) {
+            HighScore hs = new HighScore(s);
+            l.record(hs.getName(), hs.getScore());
         }
-        
-        
-        
-        public final double getScore() { return this.score; }
-        public final String getName() { return this.name; }
     }
 }
@@ -15,7 +15,7 @@ import javax.swing.JOptionPane;
  * @author Max Strange
  */
 public class ScoreViewer extends JFrame {
-    private final int MAX_USER_NAME_LENGTH = 20;//The longest the user's name is allowed to be
+    public static final int MAX_USER_NAME_LENGTH = 20;//The longest the user's name is allowed to be
     private final double seconds;//The number of seconds passed since the start to the end - used for scoring
     
     
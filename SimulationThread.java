@@ -0,0 +1,131 @@
+package fussball;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the game's simulation on its own thread at a fixed rate, so that
+ * painting (and anything else on the event dispatch thread) can never slow
+ * the game down, and a slow simulation step can never hold up painting.
+ * After each step the positions of the moving things are published as a
+ * RenderFrame for the GUI to draw from.
+ * @author Max Strange
+ */
+public class SimulationThread extends Thread {
+    /**
+     * The most steps the simulation will fall behind before it gives up on
+     * catching up (so that a long pause doesn't turn into a burst of steps).
+     */
+    private final int MAX_STEPS_BEHIND = 10;
+
+    private final GameState state;
+    private final GameLogic logic;
+    private final long stepNanos;//The length of one simulation step in nanoseconds
+    private final Object frameLock = new Object();//Guards the two published frames
+    private final RenderFrame previousFrame;//The frame published one step before currentFrame
+    private final RenderFrame currentFrame;//The most recently published frame
+    private volatile boolean running = true;
+    /*
+    Set (by this thread) once a step ends the game. Other threads must check
+    this rather than GameState.gameIsOver(), which reads the scores while this
+    thread changes them. Everything this thread did to the state before
+    setting it can be read safely once it is seen to be true.
+    */
+    private volatile boolean gameOver = false;
+    private int numSteps = 0;//The number of steps simulated so far
+
+    /**
+     * Constructor. The state should already be initialized.
+     * @param state The state of the game.
+     * @param logic The logic that manipulates the state.
+     */
+    public SimulationThread(GameState state, GameLogic logic) {
+        super("Simulation");
+        setDaemon(true);
+
+        this.state = state;
+        this.logic = logic;
+        this.stepNanos = (GameState.TICK_LENGTH_MS * 1000000L) / state.getStepsPerTick();
+
+        int numSpindles = state.getAllSpindles().length;
+        this.previousFrame = new RenderFrame(numSpindles);
+        this.currentFrame = new RenderFrame(numSpindles);
+
+        long now = System.nanoTime();
+        this.previousFrame.capture(state, now);
+        this.currentFrame.capture(state, now);
+    }
+
+
+
+    @Override
+    public void run() {
+        long nextStep = System.nanoTime() + this.stepNanos;
+
+        while (this.running && !this.gameOver) {
+            long now = System.nanoTime();
+            if (now < nextStep) {
+                LockSupport.parkNanos(nextStep - now);//Not time yet
+                continue;
+            }
+
+            step(nextStep);
+            nextStep += this.stepNanos;
+
+            //If we have fallen way behind (the machine was asleep, say), don't try to catch up
+            if ((now - nextStep) > (MAX_STEPS_BEHIND * this.stepNanos))
+                nextStep = now;
+        }
+    }
+
+    /**
+     * Copies the last two published frames so that they can be drawn in
+     * between. Only holds the lock long enough to copy.
+     * @param previous Filled in with the frame before the latest one.
+     * @param current Filled in with the latest frame.
+     */
+    public void copyFrames(RenderFrame previous, RenderFrame current) {
+        synchronized (this.frameLock) {
+            previous.copyFrom(this.previousFrame);
+            current.copyFrom(this.currentFrame);
+        }
+    }
+
+    /**
+     * Stops the simulation after the step it is on (if any).
+     */
+    public void stopSimulation() {
+        this.running = false;
+    }
+
+    /**
+     * Gets whether the game has ended. Safe to call from any thread.
+     * @return Whether the game is over.
+     */
+    public boolean isGameOver() { return this.gameOver; }
+
+    /**
+     * Gets the length of each simulation step.
+     * @return The length of each step in nanoseconds.
+     */
+    public long getStepNanos() { return this.stepNanos; }
+
+
+
+    /**
+     * Simulates one step and publishes the result.
+     * @param stepTime The System.nanoTime() the step was due at.
+     */
+    private void step(long stepTime) {
+        this.numSteps++;
+
+        //Keyboard input is queued up and applied by the logic at the start of a tick, so only this thread changes the state
+        this.logic.respondToSimulationStep(this.numSteps);
+
+        synchronized (this.frameLock) {
+            this.previousFrame.copyFrom(this.currentFrame);
+            this.currentFrame.capture(this.state, stepTime);
+        }
+        if (this.state.gameIsOver())
+            this.gameOver = true;
+    }
+}
@@ -2,7 +2,6 @@ package fussball;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Point;
 import java.awt.event.KeyEvent;
 
 /**
@@ -10,12 +9,18 @@ import java.awt.event.KeyEvent;
  * @author Max Strange
  */
 public class Spindle {
-    private Point top;//Top of the stick
-    private Point bottom;//Bottom of the stick
-    private Point intersectTop;//The point where the top of the table meets the spindle
-    private Point intersectBottom;//The point where the bottom of the table meets the spindle
+    static final int SNAPSHOT_LENGTH = 3;//The number of longs a spindle takes up in a snapshot
+    
+    private int x;//The x value of the stick
+    private int topY;//The y value of the top of the stick
+    private int bottomY;//The y value of the bottom of the stick
+    private int intersectTopY;//The y value where the top of the table meets the spindle
+    private int intersectBottomY;//The y value where the bottom of the table meets the spindle
+    private int length;//The length of the stick (from top to bottom)
+    private int[] playerOffsets;//The distance from the top of the stick to each player
     private Player[] players;//The players on the stick
-    private Color color;//The color that the players should be painted.
+    private PlayerRegistry registry;//The registry that holds the players' state
+    private int firstPlayer;//The id of the first player on the stick (the rest follow it)
     private boolean selected = false;//Whether the user has the spindle currently selected or not
     private char control;//The control char for the spindle
     private int distancePerMove;//The distance the spindle moves when moved
@@ -32,23 +37,28 @@ public class Spindle {
      * Goes through each player on the spindle and decays it's momentum.
      */
     public void decayMomentum() {
-        for (Player p : this.players) {
-            p.decayMomentum();
-        }
+        this.registry.decayMomentum(this.firstPlayer, this.players.length);
     }
     
     /**
      * Since spindles are complicated, they come with the ability to draw
      * themselves!
+     * The spindle is drawn as if its top were at the given y value and its
+     * players were in the given orientation, so that it can be drawn in
+     * between simulation steps.
      * @param g The Graphics object used to draw the Spindle.
+     * @param sprites The pictures of the players to draw with.
+     * @param color The color that the spindle and players should be painted.
+     * @param topY The y value to draw the top of the stick at.
+     * @param orientation The orientation to draw the players in.
      */
-    public void draw(Graphics g) {
+    public void draw(Graphics g, PlayerSprites sprites, Color color, int topY, Orientation orientation) {
         Color prev = g.getColor();//Save the color to set back to at the end
-        g.setColor(this.color);
-        g.drawLine(this.top.x, this.top.y, this.bottom.x, this.bottom.y);
+        g.setColor(color);
+        g.drawLine(this.x, topY, this.x, topY + this.length);
         
-        for (Player p : this.players) {
-            p.draw(g);
+        for (int i = 0; i < this.players.length; i++) {
+            this.players[i].draw(g, sprites, color, topY + this.playerOffsets[i], orientation);
         }
         
         g.setColor(prev);//Set the color back to whatever it was to prevent surprises
@@ -56,28 +66,33 @@ public class Spindle {
     
     /**
      * Initializes the Spindle
+     * @param registry The registry to keep the players' state in.
      * @param numberOfPlayers The number of players the spindle has on it - they
      * will be equally spaced and centered, so if you pass in the number 1, you
      * will get a Spindle with a single player on it who is right in the center
      * of the stick.
-     * @param top The top of the Spindle (sticks over the edge of the table)
-     * @param bottom The bottom of the Spindle
-     * @param intersectTop The point where the top of the table intersects the spindle
-     * @param intersectBottom The point where the bottom of the table intersects the spindle
-     * @param color The color that the spindle and players should be colored.
+     * @param x The x value of the Spindle
+     * @param topY The y value of the top of the Spindle (sticks over the edge of the table)
+     * @param bottomY The y value of the bottom of the Spindle
+     * @param intersectTopY The y value where the top of the table intersects the spindle
+     * @param intersectBottomY The y value where the bottom of the table intersects the spindle
      * @param control The char to be used to control this spindle (if human).
      */
-    public void initialize(int numberOfPlayers, Point top, Point bottom, 
-            Point intersectTop, Point intersectBottom, Color color, char control) {
-        this.top = top;
-        this.bottom = bottom;
-        this.intersectTop = intersectTop;
-        this.intersectBottom = intersectBottom;
+    public void initialize(PlayerRegistry registry, int numberOfPlayers, int x, int topY, int bottomY, 
+            int intersectTopY, int intersectBottomY, char control) {
+        this.x = x;
+        this.topY = topY;
+        this.bottomY = bottomY;
+        this.intersectTopY = intersectTopY;
+        this.intersectBottomY = intersectBottomY;
+        this.length = bottomY - topY;
+        this.playerOffsets = new int[numberOfPlayers];
         this.players = new Player[numberOfPlayers];
-        this.color = color;
+        this.registry = registry;
+        this.firstPlayer = registry.size();
         this.control = control;
         
-        double length = (double)(bottom.y - top.y);
+        double length = (double)(bottomY - topY);
         double denom = (double)(numberOfPlayers + 1.0);
         int distance;//The distance between each player (and the top to the first player and the bottom to the last).
         distance = (int)((length / denom) + 0.5);
@@ -85,9 +100,11 @@ public class Spindle {
         this.distancePerMove = (int)((length / 40.0) + 0.5);
         
         for (int i = 0; i < numberOfPlayers; i++) {
-            Point loc = new Point(top.x, top.y + (distance * (i + 1)));
-            this.players[i] = new Player(loc);
+            this.playerOffsets[i] = distance * (i + 1);
+            this.players[i] = new Player(registry, x, topY + this.playerOffsets[i]);
         }
+        
+        registry.addColumn(x, this.firstPlayer, numberOfPlayers);
     }
     
     /**
@@ -100,28 +117,23 @@ public class Spindle {
         
         if (up) {
             Player top = getTopPlayer();
-            int distToWall = top.getLocation().y - this.intersectTop.y;
+            int distToWall = top.getY() - this.intersectTopY;
             boolean distToWallIsLessThanNormalDist = 
                     distToWall < this.distancePerMove;
             dist = distToWallIsLessThanNormalDist ? distToWall : this.distancePerMove;
         } else {
             Player bottom = getBottomPlayer();
-            int distToWall = this.intersectBottom.y - bottom.getLocation().y;
+            int distToWall = this.intersectBottomY - bottom.getY();
             boolean distToWallIsLessThanNormalDist = 
                     distToWall < this.distancePerMove;
             dist = distToWallIsLessThanNormalDist ? distToWall : this.distancePerMove;
         }
         
-        int topY = up ? this.top.y - dist : this.top.y + dist;
-        int bottomY = up ? this.bottom.y - dist : this.bottom.y + dist;
-                
-        this.top = new Point(this.top.x, topY);
-        this.bottom = new Point(this.bottom.x, bottomY);
+        this.topY = up ? this.topY - dist : this.topY + dist;
+        this.bottomY = up ? this.bottomY - dist : this.bottomY + dist;
         
         //Adjust each player
-        for (Player p : this.players) {
-            p.move(up, dist);
-        }
+        this.registry.move(this.firstPlayer, this.players.length, up, dist);
     }
     
     /**
@@ -130,9 +142,48 @@ public class Spindle {
      * rotates it counter clockwise.
      */
     public void rotate(boolean clockwise) {
-        for (Player p : this.players) {
-            p.rotate(clockwise);
-        }
+        this.registry.rotate(this.firstPlayer, this.players.length, clockwise);
+    }
+    
+    /**
+     * Makes this spindle the same as another one (where it is and whether it
+     * is selected). The players are copied along with the rest of the
+     * registry, not here. Both spindles must be the same shape.
+     * @param other The spindle to copy.
+     */
+    public void copyFrom(Spindle other) {
+        this.topY = other.topY;
+        this.bottomY = other.bottomY;
+        this.selected = other.selected;
+    }
+    
+    /**
+     * Writes where the spindle is and whether it is selected into a snapshot
+     * (see GameSnapshot). The players are written along with the rest of
+     * the registry, not here.
+     * @param data The snapshot's data.
+     * @param offset Where to start writing.
+     * @return Where the next thing should be written.
+     */
+    public int writeTo(long[] data, int offset) {
+        data[offset] = this.topY;
+        data[offset + 1] = this.bottomY;
+        data[offset + 2] = this.selected ? 1 : 0;
+        return offset + SNAPSHOT_LENGTH;
+    }
+    
+    /**
+     * Reads where the spindle is and whether it is selected back out of a
+     * snapshot written by writeTo.
+     * @param data The snapshot's data.
+     * @param offset Where to start reading.
+     * @return Where the next thing should be read from.
+     */
+    public int readFrom(long[] data, int offset) {
+        this.topY = (int)data[offset];
+        this.bottomY = (int)data[offset + 1];
+        this.selected = data[offset + 2] != 0;
+        return offset + SNAPSHOT_LENGTH;
     }
     
     /**
@@ -148,6 +199,31 @@ public class Spindle {
     
     
     
+    /**
+     * Finds the player that can get nearest to the given y value, given how
+     * far the spindle can move up and down. This isn't always the player
+     * that is nearest right now - that one may be up against the end of the
+     * spindle's travel.
+     * @param y The y value.
+     * @return The nearest player.
+     */
+    public Player getNearestPlayer(double y) {
+        int minShift = this.intersectTopY - getTopPlayer().getY();//How far the spindle can move up (negative)
+        int maxShift = this.intersectBottomY - getBottomPlayer().getY();//How far the spindle can move down
+        
+        Player nearest = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (Player p : this.players) {
+            double shift = Math.max(minShift, Math.min(maxShift, y - p.getY()));
+            double distance = Math.abs(y - (p.getY() + shift));
+            if (distance < nearestDistance) {
+                nearest = p;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+    
     /**
      * Returns the player who is at the bottom of the spindle.
      * @return The bottom player from the spindle.
@@ -155,7 +231,7 @@ public class Spindle {
     public Player getBottomPlayer() {
         Player bottom = getPlayers()[0];
         for (Player p : getPlayers()) {
-            if (p.getLocation().y > bottom.getLocation().y)
+            if (p.getY() > bottom.getY())
                 bottom = p;
         }
         return bottom;
@@ -167,12 +243,19 @@ public class Spindle {
     public Player getTopPlayer() {
         Player top = getPlayers()[0];
         for (Player p : getPlayers()) {
-            if (p.getLocation().y < top.getLocation().y)
+            if (p.getY() < top.getY())
                 top = p;
         }
         return top;
     }
-    public Point getBottom() { return this.bottom; }
+    public int getX() { return this.x; }
+    public int getTopY() { return this.topY; }
+    public int getBottomY() { return this.bottomY; }
+    public int getLength() { return this.length; }
+    public int getDistancePerMove() { return this.distancePerMove; }
+    public int getIntersectTopY() { return this.intersectTopY; }
+    public int getIntersectBottomY() { return this.intersectBottomY; }
+    public int getFirstPlayerId() { return this.firstPlayer; }
     public char getControl() { return this.control; }
     public Player[] getPlayers() { return this.players; }
     public boolean isSelected() { return this.selected; }
@@ -0,0 +1,80 @@
+package fussball;
+
+/**
+ * The things an AI can have a spindle do in one turn, numbered so that they
+ * can be stored in a byte. A spindle can move up, stay or move down, and at
+ * the same time rotate towards the opponent's goal, not rotate or rotate
+ * away from it. The action's number is the move times three plus the
+ * rotation, so there are nine of them.
+ * @author Max Strange
+ */
+public class SpindleAction {
+    public static final int NUM_ACTIONS = 9;
+    public static final int NOTHING = 4;//Stay and don't rotate
+
+    public static final int MOVE_UP = 0;
+    public static final int STAY = 1;
+    public static final int MOVE_DOWN = 2;
+    public static final int ROTATE_TOWARDS = 0;//Towards the opponent's goal
+    public static final int NO_ROTATION = 1;
+    public static final int ROTATE_AWAY = 2;
+
+    private SpindleAction() {
+    }
+
+
+
+    /**
+     * Gets the number of the action that makes the given move and rotation.
+     * @param move MOVE_UP, STAY or MOVE_DOWN.
+     * @param rotation ROTATE_TOWARDS, NO_ROTATION or ROTATE_AWAY.
+     * @return The action.
+     */
+    public static int of(int move, int rotation) {
+        return (move * 3) + rotation;
+    }
+
+    /**
+     * Has a spindle do an action.
+     * @param s The spindle.
+     * @param action The action.
+     * @param human Whether the spindle is on the human's side (which decides
+     * which way is towards the opponent's goal).
+     */
+    public static void apply(Spindle s, int action, boolean human) {
+        int move = action / 3;
+        int rotation = action % 3;
+
+        if (move == MOVE_UP)
+            s.move(true);
+        else if (move == MOVE_DOWN)
+            s.move(false);
+
+        if (rotation == ROTATE_TOWARDS)
+            s.rotate(human);//The human kicks towards the left by rotating clockwise
+        else if (rotation == ROTATE_AWAY)
+            s.rotate(!human);
+    }
+
+    /**
+     * Works out which action a spindle did, from where it was and which way
+     * it faced beforehand. Only one move and one turn can be told apart, so
+     * turning twice counts as rotating towards the opponent's goal.
+     * @param s The spindle.
+     * @param previousTopY The y value of the top of the spindle beforehand.
+     * @param previousOrientation Which way the spindle's players faced beforehand.
+     * @param human Whether the spindle is on the human's side.
+     * @return The action.
+     */
+    public static int observe(Spindle s, int previousTopY, Orientation previousOrientation, boolean human) {
+        int top = s.getTopY();
+        int move = (top < previousTopY) ? MOVE_UP : ((top > previousTopY) ? MOVE_DOWN : STAY);
+
+        //Clockwise is forward one orientation, and the human rotates towards the left goal clockwise
+        int turn = (s.getPlayers()[0].getOrientation().ordinal() - previousOrientation.ordinal() + 4) % 4;
+        int away = human ? 3 : 1;
+        int rotation = (turn == 0) ? NO_ROTATION : ((turn == away) ? ROTATE_AWAY : ROTATE_TOWARDS);
+
+        return of(move, rotation);
+    }
+}
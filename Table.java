@@ -1,8 +1,5 @@
 package fussball;
 
-import java.awt.Point;
-import javax.swing.JPanel;
-
 /**
  *A class to represent the table that the game is played on.
  * @author Max Strange
@@ -19,16 +16,17 @@ public class Table {
     
     /**
      * Constructor for the table.
-     * @param parent The JPanel that the table will be drawn on.
+     * @param width The width of the area the table will be drawn on.
+     * @param height The height of the area the table will be drawn on.
      */
-    public Table(JPanel parent) {
+    public Table(int width, int height) {
         //Initialize the walls
-        double boarderSizeX = parent.getWidth() / 10;
+        double boarderSizeX = width / 10;
         double xStart = boarderSizeX;
-        double xWidth = parent.getWidth() - (2 * boarderSizeX);
-        double boarderSizeY = parent.getHeight() / 10;
+        double xWidth = width - (2 * boarderSizeX);
+        double boarderSizeY = height / 10;
         double yStart = boarderSizeY;
-        double yWidth = parent.getHeight() - (2 * boarderSizeY);
+        double yWidth = height - (2 * boarderSizeY);
         
         this.leftWall = new LeftRightWall((int)xStart, (int)yStart, (int)yWidth);
         this.rightWall = new LeftRightWall((int)(xStart + xWidth), (int)yStart, (int)yWidth);
@@ -85,19 +83,24 @@ public class Table {
     public Goal getRightGoal() { return this.rightGoal; }
     
     /**
-     * Gets the center of the table and returns it as a Point object.
-     * @return The Point that represents the center of the table.
+     * Gets the x value of the center of the table.
+     * @return The x value of the center of the table.
      */
-    public Point getCenter() {
+    public int getCenterX() {
         int tableLeftX = this.getLeftWall().getX();
         int tableWidth = this.getRightWall().getX() - tableLeftX;
+        
+        return (int)((tableWidth / 2.0) + 0.5) + tableLeftX;
+    }
+    
+    /**
+     * Gets the y value of the center of the table.
+     * @return The y value of the center of the table.
+     */
+    public int getCenterY() {
         int tableTopY = this.getTopWall().getY();
         int tableHeight = this.getBottomWall().getY() - tableTopY;
         
-        int x = (int)((tableWidth / 2.0) + 0.5) + tableLeftX;
-        int y = (int)((tableHeight / 2.0) + 0.5) + tableTopY;
-        
-        
-        return new Point(x, y);
+        return (int)((tableHeight / 2.0) + 0.5) + tableTopY;
     }
 }
\ No newline at end of file
@@ -1,17 +1,18 @@
 package fussball;
 
-import java.awt.Color;
-import java.awt.Point;
-
 /**
  *A team is essentially a list of Spindles on a given foosball "team".
  * @author Max Strange
  */
 public class Team {
     private Spindle[] spindles = new Spindle[3];
+    private final PlayerRegistry registry;//The registry that holds the players' state
+    private final int firstPlayer;//The id of the team's first player (the rest follow it)
+    private final int numPlayers;//The number of players on the team
     
     /**
      * Constructor.
+     * @param registry The registry to keep the players' state in.
      * @param topIntersect The y value of the top of the table
      * @param bottomIntersect The y value of the bottom of the table
      * @param startingX The left most wall's x value plus a little (for the computer)
@@ -20,11 +21,13 @@ public class Team {
      * @param stickOutInterval A multiple to be used to determine how far over
      * the table's bounds each spindle will stick out (each will stick out
      * a multiple of this number).
-     * @param Color The color of the team.
      * @param human If the team is the human team or not
      */
-    public Team(int topIntersect, int bottomIntersect, int startingX, 
-            int widthInterval, int stickOutInterval, Color color, boolean human) {
+    public Team(PlayerRegistry registry, int topIntersect, int bottomIntersect, int startingX, 
+            int widthInterval, int stickOutInterval, boolean human) {
+        this.registry = registry;
+        this.firstPlayer = registry.size();
+        
         for (int i = 0; i < this.spindles.length; i++) {
             this.spindles[i] = new Spindle();
             
@@ -50,15 +53,11 @@ public class Team {
                 stickOut = stickOutInterval;
             }
             
-            Point top = new Point(x, topIntersect - stickOut);
-            Point bottom = new Point(x, bottomIntersect + stickOut);
-            Point topTable = new Point(x, topIntersect);
-            Point bottomTable = new Point(x, bottomIntersect);
-            
-            
-            this.spindles[i].initialize(numPlayers, top, bottom, 
-                    topTable, bottomTable, color, control);
+            this.spindles[i].initialize(registry, numPlayers, x, topIntersect - stickOut, 
+                    bottomIntersect + stickOut, topIntersect, bottomIntersect, control);
         }
+        
+        this.numPlayers = registry.size() - this.firstPlayer;
     }
     
     /**
@@ -84,5 +83,14 @@ public class Team {
         }
     }
     
+    /**
+     * Decays the momentum of every player on the team.
+     */
+    public void decayMomentum() {
+        this.registry.decayMomentum(this.firstPlayer, this.numPlayers);
+    }
+    
     public Spindle[] getSpindles() { return this.spindles; }
+    public int getFirstPlayerId() { return this.firstPlayer; }
+    public int getNumPlayers() { return this.numPlayers; }
 }
@@ -0,0 +1,259 @@
+package fussball;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.SplittableRandom;
+
+/**
+ * The numbers that decide how the random GameAI plays and how the game feels,
+ * all in one place so that a ParameterTuner can search for better ones. They
+ * are kept as a plain array of doubles (the ones that have to be whole
+ * numbers are rounded), indexed by the constants below. Parameters are never
+ * changed once made - mutating or crossing them makes new ones.
+ * @author Max Strange
+ */
+public class TuningParameters {
+    public static final String DEFAULT_FILE_NAME = "tuning.txt";
+
+    public static final int ROTATE_TOWARDS = 0;//See GameAI
+    public static final int ROTATE_AWAY = 1;//See GameAI
+    public static final int AI_TURN_TICKS = 2;//See GameLogic.setAITurnTicks()
+    public static final int FRICTION = 3;//See Ball.setFriction()
+    public static final int ACCELERATION_X = 4;//See Ball.setAccelerationX()
+    public static final int MOMENTUM_CHANGE = 5;//See PlayerRegistry.setMomentum()
+    public static final int MAX_MOMENTUM = 6;//See PlayerRegistry.setMomentum()
+    public static final int NUM_PARAMETERS = 7;
+
+    private static final String[] NAMES = {"rotateTowards", "rotateAway", "aiTurnTicks", "friction",
+            "accelerationX", "momentumChange", "maxMomentum"};
+    private static final double[] DEFAULTS = {GameAI.DEFAULT_ROTATE_TOWARDS, GameAI.DEFAULT_ROTATE_AWAY,
+            GameLogic.DEFAULT_AI_TURN_TICKS, Ball.DEFAULT_FRIC_FRAC, Ball.DEFAULT_ACC_X_MAG,
+            PlayerRegistry.DEFAULT_MOMENTUM_CHANGE, PlayerRegistry.DEFAULT_MAX_MOMENTUM};
+    private static final double[] MIN = {0.0, 0.0, 1.0, 0.5, 5.0, 1.0, 5.0};
+    private static final double[] MAX = {99.0, 99.0, 20.0, 0.99, 60.0, 15.0, 50.0};
+    private static final boolean[] WHOLE = {true, true, true, false, false, false, false};//Whether each one is rounded
+    private final double MUTATION_SIZE = 0.1;//The standard deviation of a mutation, as a fraction of the parameter's range
+
+    private final double[] values;
+
+    /**
+     * Constructor for the parameters the game uses unless it is told
+     * otherwise.
+     */
+    public TuningParameters() {
+        this(DEFAULTS);
+    }
+
+    /**
+     * Constructor. Values outside a parameter's range are moved to the end
+     * of it, and the whole number ones are rounded.
+     * @param values The value of each parameter, indexed by the constants.
+     */
+    public TuningParameters(double[] values) {
+        if (values.length != NUM_PARAMETERS)
+            throw new IllegalArgumentException("There must be a value for every parameter.");
+
+        this.values = new double[NUM_PARAMETERS];
+        for (int i = 0; i < NUM_PARAMETERS; i++) {
+            double v = Math.max(MIN[i], Math.min(MAX[i], values[i]));
+            this.values[i] = WHOLE[i] ? Math.rint(v) : v;
+        }
+    }
+
+
+
+    /**
+     * Makes parameters with values picked at random from their ranges.
+     * @param r The random number generator to use.
+     * @param which Which parameters to pick (indexed by the constants). The
+     * rest get their default values.
+     * @return The parameters.
+     */
+    public static TuningParameters random(SplittableRandom r, boolean[] which) {
+        double[] v = DEFAULTS.clone();
+        for (int i = 0; i < NUM_PARAMETERS; i++) {
+            if (which[i])
+                v[i] = MIN[i] + (r.nextDouble() * (MAX[i] - MIN[i]));
+        }
+        return new TuningParameters(v);
+    }
+
+    /**
+     * Makes a copy of these parameters with some of them nudged at random.
+     * @param r The random number generator to use.
+     * @param rate The chance of each parameter being nudged.
+     * @param which Which parameters may be nudged (indexed by the constants).
+     * @return The new parameters.
+     */
+    public TuningParameters mutate(SplittableRandom r, double rate, boolean[] which) {
+        double[] v = new double[NUM_PARAMETERS];
+        for (int i = 0; i < NUM_PARAMETERS; i++) {
+            v[i] = this.values[i];
+            if (which[i] && (r.nextDouble() < rate))
+                v[i] += gaussian(r) * MUTATION_SIZE * (MAX[i] - MIN[i]);
+        }
+        return new TuningParameters(v);
+    }
+
+    /**
+     * Makes new parameters that take each value from either these or the
+     * other parameters, at random.
+     * @param other The other parameters.
+     * @param r The random number generator to use.
+     * @return The new parameters.
+     */
+    public TuningParameters crossWith(TuningParameters other, SplittableRandom r) {
+        double[] v = new double[NUM_PARAMETERS];
+        for (int i = 0; i < NUM_PARAMETERS; i++) {
+            v[i] = r.nextBoolean() ? this.values[i] : other.values[i];
+        }
+        return new TuningParameters(v);
+    }
+
+
+
+    /**
+     * Sets up the physics of an (initialized) game with these parameters.
+     * @param state The state of the game.
+     */
+    public void applyTo(GameState state) {
+        state.getBall().setFriction(this.values[FRICTION]);
+        state.getBall().setAccelerationX(this.values[ACCELERATION_X]);
+        double change = this.values[MOMENTUM_CHANGE];
+        state.getPlayerRegistry().setMomentum(change, Math.max(change, this.values[MAX_MOMENTUM]));
+    }
+
+    /**
+     * Sets how often the AIs get a turn with these parameters.
+     * @param logic The game's logic.
+     */
+    public void applyTo(GameLogic logic) {
+        logic.setAITurnTicks((int)this.values[AI_TURN_TICKS]);
+    }
+
+    /**
+     * Makes a random GameAI that plays with these parameters.
+     * @param human If true, the AI plays the human's side of the table.
+     * Otherwise, it plays the computer's side.
+     * @return The AI.
+     */
+    public GameAI makeAI(boolean human) {
+        return new GameAI(human, (int)this.values[ROTATE_TOWARDS], (int)this.values[ROTATE_AWAY]);
+    }
+
+    public double get(int parameter) { return this.values[parameter]; }
+
+
+
+    /**
+     * Writes the values to a stream, as NUM_PARAMETERS doubles.
+     * @param out The stream.
+     * @throws IOException Thrown if the stream can't be written to.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        for (double v : this.values) {
+            out.writeDouble(v);
+        }
+    }
+
+    /**
+     * Reads parameters written by writeTo.
+     * @param in The stream.
+     * @return The parameters.
+     * @throws IOException Thrown if the stream can't be read from.
+     */
+    public static TuningParameters readFrom(DataInputStream in) throws IOException {
+        double[] v = new double[NUM_PARAMETERS];
+        for (int i = 0; i < NUM_PARAMETERS; i++) {
+            v[i] = in.readDouble();
+        }
+        return new TuningParameters(v);
+    }
+
+    /**
+     * Saves the parameters to a text file, one "name=value" line each.
+     * @param fileName The file to write.
+     * @throws IOException Thrown if the file can't be written.
+     */
+    public void save(String fileName) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+            out.print(toString());
+        }
+    }
+
+    /**
+     * Loads parameters saved by save(). Any parameter that isn't in the file
+     * keeps its default value, and anything that isn't a parameter is
+     * ignored.
+     * @param fileName The file to read.
+     * @return The parameters.
+     * @throws IOException Thrown if the file can't be read or has a value
+     * that isn't a number.
+     */
+    public static TuningParameters load(String fileName) throws IOException {
+        double[] v = DEFAULTS.clone();
+        try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int equals = line.indexOf('=');
+                if (equals < 0)
+                    continue;
+
+                String name = line.substring(0, equals).trim();
+                for (int i = 0; i < NUM_PARAMETERS; i++) {
+                    if (NAMES[i].equals(name))
+                        v[i] = parse(line.substring(equals + 1).trim(), fileName);
+                }
+            }
+        }
+        return new TuningParameters(v);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUM_PARAMETERS; i++) {
+            sb.append(NAMES[i]).append('=');
+            if (WHOLE[i])
+                sb.append((long)this.values[i]);
+            else
+                sb.append(this.values[i]);
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+
+
+    /**
+     * Parses a value from a parameters file.
+     * @param value The value.
+     * @param fileName The file (for the error message).
+     * @return The number.
+     * @throws IOException Thrown if the value isn't a number.
+     */
+    private static double parse(String value, String fileName) throws IOException {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IOException(fileName + " has a value that isn't a number: " + value, e);
+        }
+    }
+
+    /**
+     * Draws a number from the standard normal distribution (SplittableRandom
+     * doesn't have one).
+     * @param r The random number generator to use.
+     * @return The number.
+     */
+    private static double gaussian(SplittableRandom r) {
+        //The Box-Muller transform
+        double u = 1.0 - r.nextDouble();//Never 0, so the log is finite
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * r.nextDouble());
+    }
+}
@@ -1,7 +1,9 @@
 package fussball;
 
 /**
- *A class to represent a mathematical or physical 2D vector quantity.
+ *A class to represent a mathematical or physical 2D vector quantity. Vectors
+ * are mutable so that the physics can update them in place every tick instead
+ * of making new ones.
  * @author Max Strange
  */
 public class Vector {
@@ -13,6 +15,27 @@ public class Vector {
         this.y = y;
     }
 
+    /**
+     * Sets both components of the vector.
+     * @param x The new x component.
+     * @param y The new y component.
+     */
+    public void set(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+    
+    /**
+     * Multiplies both components of the vector by the given factor.
+     * @param factor The factor to scale the vector by.
+     */
+    public void scale(double factor) {
+        this.x *= factor;
+        this.y *= factor;
+    }
+    
+    public void setXComponent(double x) { this.x = x; }
+    public void setYComponent(double y) { this.y = y; }
     public double getMagnitude() { return Math.sqrt((this.x * this.x) + (this.y * this.y)); }
     public double getXComponent() { return this.x; }
     public double getYComponent() { return this.y; }
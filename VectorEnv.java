@@ -0,0 +1,199 @@
+package fussball;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.Phaser;
+
+/**
+ * Lots of FussballEnvs stepped together in one call, spread over every core.
+ * The environments are split into one chunk per thread, and each thread
+ * only ever touches its own chunk's environments and its own part of the
+ * arrays, so the threads never share anything that changes. The thread that
+ * calls step() does the first chunk itself, and each of the others has a
+ * thread of its own that waits for the next step on a Phaser, so stepping
+ * doesn't hand out tasks or allocate anything.
+ *
+ * Everything is laid out flat: environment k's actions start at
+ * k * FussballEnv.NUM_ACTIONS and its observation at
+ * k * FussballEnv.OBSERVATION_LENGTH. An environment whose episode is over is
+ * reset straight away with the next seed from its own seed sequence, so the
+ * observation written for it is the first one of the new episode (and its
+ * done flag says the old one ended).
+ * @author Max Strange
+ */
+public class VectorEnv {
+    private final FussballEnv[] envs;
+    private final SplittableRandom[] seeds;//Each environment's own seeds for its episodes
+    private final Chunk[] chunks;
+    private final Phaser start;//Every chunk's thread waits on this for a step to start
+    private final Phaser finish;//The stepping thread waits on this for every chunk to be done
+
+    /**
+     * Constructor for environments with the random GameAI as the opponent,
+     * on every core.
+     * @param numEnvs The number of environments.
+     * @param seed The seed that every episode's seed is drawn from.
+     */
+    public VectorEnv(int numEnvs, long seed) {
+        this(numEnvs, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor for environments with the random GameAI as the opponent.
+     * @param numEnvs The number of environments.
+     * @param seed The seed that every episode's seed is drawn from. The same
+     * seed gives the same episodes, no matter how many threads are used.
+     * @param numThreads The number of threads to step the environments on.
+     */
+    public VectorEnv(int numEnvs, long seed, int numThreads) {
+        if (numEnvs < 1)
+            throw new IllegalArgumentException("There must be at least one environment.");
+        if (numThreads < 1)
+            throw new IllegalArgumentException("There must be at least one thread.");
+
+        this.envs = new FussballEnv[numEnvs];
+        this.seeds = new SplittableRandom[numEnvs];
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int k = 0; k < numEnvs; k++) {
+            this.envs[k] = new FussballEnv();
+            this.seeds[k] = root.split();
+        }
+
+        int numChunks = Math.min(numEnvs, numThreads);
+        this.chunks = new Chunk[numChunks];
+        this.start = new Phaser(numChunks);//The stepping thread and the other chunks' threads
+        this.finish = new Phaser(numChunks);
+        int first = 0;
+        for (int i = 0; i < numChunks; i++) {
+            int size = (numEnvs / numChunks) + ((i < (numEnvs % numChunks)) ? 1 : 0);
+            this.chunks[i] = new Chunk(first, size);
+            first += size;
+        }
+
+        for (int i = 1; i < numChunks; i++) {//The first chunk is done by the stepping thread
+            Thread t = new Thread(new ChunkThread(this.chunks[i]), "Environment " + i);
+            t.setDaemon(true);//So they don't keep the program running once it is finished
+            t.start();
+        }
+    }
+
+
+
+    /**
+     * Starts a new episode in every environment.
+     * @param observations Where to write every environment's first
+     * observation.
+     */
+    public void reset(float[] observations) {
+        for (int k = 0; k < this.envs.length; k++) {
+            this.envs[k].reset(this.seeds[k].nextLong(), observations, k * FussballEnv.OBSERVATION_LENGTH);
+        }
+    }
+
+    /**
+     * Steps every environment at once. A step is either done completely or
+     * not at all: once it has started, it isn't interrupted (it only takes as
+     * long as stepping each environment once).
+     * @param actions Every environment's actions.
+     * @param observations Where to write every environment's next observation.
+     * @param rewards Where to write every environment's reward.
+     * @param dones Where to write whether each environment's episode ended
+     * (it has been reset already if it did).
+     * @throws InterruptedException Thrown (without stepping anything) if the
+     * thread was interrupted before the step.
+     */
+    public void step(int[] actions, float[] observations, float[] rewards, boolean[] dones) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        for (Chunk c : this.chunks) {
+            c.prepare(actions, observations, rewards, dones);
+        }
+
+        this.start.arrive();//Lets the other chunks' threads go
+        this.chunks[0].run();
+        this.finish.awaitAdvance(this.finish.arrive());
+
+        for (Chunk c : this.chunks) {
+            if (c.failure != null) {
+                Throwable failure = c.failure;
+                c.failure = null;
+                throw new IllegalStateException("An environment failed to step.", failure);
+            }
+        }
+    }
+
+    /**
+     * Stops the threads that step the environments. They can't be stepped
+     * after this.
+     */
+    public void shutdown() {
+        this.start.forceTermination();
+        this.finish.forceTermination();
+    }
+
+    public int getNumEnvs() { return this.envs.length; }
+    public FussballEnv getEnv(int k) { return this.envs[k]; }
+
+
+
+    /**
+     * One thread's share of the environments.
+     */
+    private class Chunk implements Runnable {
+        private final int first;//The first environment in the chunk
+        private final int size;//The number of environments in the chunk
+        private int[] actions;
+        private float[] observations;
+        private float[] rewards;
+        private boolean[] dones;
+        private Throwable failure = null;//Why the last step failed (read by the stepping thread once the step is finished)
+
+        public Chunk(int first, int size) {
+            this.first = first;
+            this.size = size;
+        }
+
+        public void prepare(int[] actions, float[] observations, float[] rewards, boolean[] dones) {
+            this.actions = actions;
+            this.observations = observations;
+            this.rewards = rewards;
+            this.dones = dones;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int k = this.first; k < this.first + this.size; k++) {
+                    FussballEnv env = VectorEnv.this.envs[k];
+                    int o = k * FussballEnv.OBSERVATION_LENGTH;
+                    this.rewards[k] = env.step(this.actions, k * FussballEnv.NUM_ACTIONS, this.observations, o);
+                    this.dones[k] = env.isDone();
+                    if (this.dones[k])
+                        env.reset(VectorEnv.this.seeds[k].nextLong(), this.observations, o);
+                }
+            } catch (RuntimeException | Error e) {
+                this.failure = e;//Kept for the stepping thread, so that this chunk's thread lives on to finish the step
+            }
+        }
+    }
+
+    /**
+     * Steps one chunk every time a step starts, until the environments are
+     * shut down.
+     */
+    private class ChunkThread implements Runnable {
+        private final Chunk chunk;
+
+        public ChunkThread(Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public void run() {
+            while (VectorEnv.this.start.arriveAndAwaitAdvance() >= 0) {//Negative once shut down
+                this.chunk.run();
+                VectorEnv.this.finish.arrive();
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package fussball;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Microbenchmarks for the game loop and the things around it. Each benchmark
+ * is warmed up, then timed over several measurement iterations, and the
+ * number of bytes allocated per operation is measured from the thread's
+ * allocation counter, so that performance changes can be measured and
+ * compared between builds.
+ *
+ * The benchmarks live in their own source folder and are not part of the
+ * game. To run them, compile them together with the game's sources:
+ * <pre>
+ * javac -d out *.java benchmark/*.java
+ * java -Djava.awt.headless=true -cp out fussball.Benchmarks [name filter]
+ * </pre>
+ * Run with -allocation instead of a filter to check that a tick of the game
+ * allocates nothing once it is warmed up (it exits with status 1 if it does).
+ * @author Max Strange
+ */
+public class Benchmarks {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 200000000L;//How long each iteration runs for (roughly)
+    private static final long SEED = 42;//Every benchmark plays the same matches
+    private static final int ALLOCATION_WARMUP_TICKS = 200000;//Ticks played before checking allocation, so the JIT has settled
+    private static final int ALLOCATION_CHECK_TICKS = 100000;//Ticks that must allocate nothing
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();//Looked up once, since looking it up can allocate
+    private static volatile long sink;//Results go here so that the JIT can't throw the work away
+
+    /**
+     * Runs the benchmarks and prints the results.
+     * @param args Optionally, a string that benchmark names must contain to be run.
+     * @throws Exception Thrown if a benchmark fails to set up.
+     */
+    public static void main(String[] args) throws Exception {
+        String filter = (args.length > 0) ? args[0] : "";
+        if (filter.equals("-allocation")) {
+            checkTickAllocation();
+            return;
+        }
+
+        Benchmark[] benchmarks = {
+            new TickBenchmark(),
+            new CollideBenchmark(),
+            new BallMoveBenchmark(),
+            new GetAllPlayersBenchmark(),
+            new GetAllSpindlesBenchmark(),
+            new AIBenchmark(),
+            new CopyStateBenchmark(),
+            new SnapshotBenchmark(),
+            new EnvStepBenchmark(),
+            new HighScoreBenchmark(),
+            new PaintBenchmark(),
+        };
+
+        System.out.println(String.format("%-40s %14s %12s %14s", "Benchmark", "ns/op", "error", "bytes/op"));
+        for (Benchmark b : benchmarks) {
+            if (b.getName().contains(filter))
+                System.out.println(measure(b));
+        }
+    }
+
+
+
+    /**
+     * Checks that ticks of a headless match (with the random GameAI on both
+     * sides) allocate nothing once warmed up. Starting a new match when one
+     * ends does allocate, so that isn't counted.
+     */
+    private static void checkTickAllocation() {
+        if (allocatedBytes() < 0) {
+            System.out.println("This JVM can't count allocated bytes, so allocation can't be checked.");
+            System.exit(1);
+        }
+
+        HeadlessMatch match = new HeadlessMatch(SEED);
+        for (int t = 0; t < ALLOCATION_WARMUP_TICKS; t++) {
+            if (match.getState().gameIsOver())
+                match = new HeadlessMatch(SEED);
+            match.tick();
+        }
+
+        long allocated = 0;
+        int ticks = 0;
+        while (ticks < ALLOCATION_CHECK_TICKS) {
+            if (match.getState().gameIsOver())
+                match = new HeadlessMatch(SEED);
+
+            long before = allocatedBytes();
+            while ((ticks < ALLOCATION_CHECK_TICKS) && !match.getState().gameIsOver()) {
+                match.tick();
+                ticks++;
+            }
+            allocated += allocatedBytes() - before;
+        }
+
+        System.out.println(allocated + " bytes allocated over " + ticks + " ticks");
+        if (allocated != 0) {
+            System.out.println("FAILED: the tick must not allocate.");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Warms up and measures one benchmark.
+     * @param b The benchmark.
+     * @return A line of results.
+     * @throws Exception Thrown if the benchmark fails to set up.
+     */
+    private static String measure(Benchmark b) throws Exception {
+        b.setUp();
+        try {
+            //Find out roughly how many operations fit in an iteration
+            long batch = 1;
+            while (true) {
+                long start = System.nanoTime();
+                runBatch(b, batch);
+                if ((System.nanoTime() - start) > (ITERATION_NANOS / 10))
+                    break;
+                batch *= 2;
+            }
+            batch *= 10;
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                runBatch(b, batch);
+            }
+
+            double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+            long allocatedBefore = allocatedBytes();
+            for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+                long start = System.nanoTime();
+                runBatch(b, batch);
+                nanosPerOp[i] = (double)(System.nanoTime() - start) / batch;
+            }
+            long allocated = Math.max(0, allocatedBytes() - allocatedBefore);//0 if allocation can't be counted
+
+            double mean = 0.0;
+            for (double n : nanosPerOp) {
+                mean += n;
+            }
+            mean /= nanosPerOp.length;
+
+            double variance = 0.0;
+            for (double n : nanosPerOp) {
+                variance += (n - mean) * (n - mean);
+            }
+            double stdDev = Math.sqrt(variance / (nanosPerOp.length - 1));
+
+            double bytesPerOp = (double)allocated / (batch * MEASUREMENT_ITERATIONS);
+            return String.format("%-40s %14.1f %12.1f %14.1f", b.getName(), mean, stdDev, bytesPerOp);
+        } finally {
+            b.tearDown();
+        }
+    }
+
+    /**
+     * Runs a benchmark's operation the given number of times.
+     * @param b The benchmark.
+     * @param ops The number of operations.
+     */
+    private static void runBatch(Benchmark b, long ops) {
+        long result = 0;
+        for (long i = 0; i < ops; i++) {
+            result += b.run();
+        }
+        sink += result;
+    }
+
+    /**
+     * Gets the number of bytes this thread has allocated so far.
+     * @return The number of bytes allocated by the current thread, or -1 if
+     * this JVM can't count them.
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean)THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        else
+            return -1;//Allocation counting isn't supported on this JVM
+    }
+
+
+
+    /**
+     * One benchmark: a set up, an operation to time, and a tear down.
+     */
+    private static abstract class Benchmark {
+        private final String name;
+
+        public Benchmark(String name) {
+            this.name = name;
+        }
+
+        public void setUp() throws Exception {
+        }
+
+        /**
+         * Does the operation being measured once.
+         * @return Something that depends on the work done (so it can't be thrown away).
+         */
+        public abstract long run();
+
+        public void tearDown() throws Exception {
+        }
+
+        public String getName() { return this.name; }
+    }
+
+    /**
+     * A benchmark that needs a match to work with. The match is replaced with
+     * a fresh one (with the same seed) whenever it ends.
+     */
+    private static abstract class MatchBenchmark extends Benchmark {
+        protected HeadlessMatch match;
+
+        public MatchBenchmark(String name) {
+            super(name);
+        }
+
+        @Override
+        public void setUp() {
+            this.match = new HeadlessMatch(SEED);
+        }
+
+        /**
+         * Starts a new match if the current one is over.
+         */
+        protected void restartIfOver() {
+            if (this.match.getState().gameIsOver())
+                this.match = new HeadlessMatch(SEED);
+        }
+    }
+
+    private static class TickBenchmark extends MatchBenchmark {
+        public TickBenchmark() { super("GameLogic.respondToTimerTick"); }
+
+        @Override
+        public long run() {
+            restartIfOver();
+            this.match.tick();
+            return this.match.getState().getBall().getX();
+        }
+    }
+
+    private static class CollideBenchmark extends MatchBenchmark {
+        private int next = 0;
+
+        public CollideBenchmark() { super("Player.collide"); }
+
+        @Override
+        public long run() {
+            //Keep the game going so that the players and ball are in realistic places
+            Player[] players = this.match.getState().getAllPlayers();
+            if (this.next == players.length) {
+                this.next = 0;
+                restartIfOver();
+                this.match.tick();
+                players = this.match.getState().getAllPlayers();
+            }
+
+            Ball ball = this.match.getState().getBall();
+            players[this.next++].collide(ball);
+            return ball.getX();
+        }
+    }
+
+    private static class BallMoveBenchmark extends MatchBenchmark {
+        public BallMoveBenchmark() { super("Ball.move"); }
+
+        @Override
+        public long run() {
+            GameState state = this.match.getState();
+            Ball ball = state.getBall();
+            ball.move(state.getTable(), state.getPlayerRegistry());
+            return ball.getX();
+        }
+    }
+
+    private static class GetAllPlayersBenchmark extends MatchBenchmark {
+        public GetAllPlayersBenchmark() { super("GameState.getAllPlayers"); }
+
+        @Override
+        public long run() {
+            return this.match.getState().getAllPlayers().length;
+        }
+    }
+
+    private static class GetAllSpindlesBenchmark extends MatchBenchmark {
+        public GetAllSpindlesBenchmark() { super("GameState.getAllSpindles"); }
+
+        @Override
+        public long run() {
+            return this.match.getState().getAllSpindles().length;
+        }
+    }
+
+    private static class AIBenchmark extends MatchBenchmark {
+        private final GameAI ai = new GameAI();
+
+        public AIBenchmark() { super("GameAI.doMoves"); }
+
+        @Override
+        public long run() {
+            this.ai.doMoves(this.match.getState());
+            return this.match.getState().getComputerSpindles()[0].getTopY();
+        }
+    }
+
+    private static class CopyStateBenchmark extends MatchBenchmark {
+        private GameState copy;
+
+        public CopyStateBenchmark() { super("GameState.copyFrom"); }
+
+        @Override
+        public void setUp() {
+            super.setUp();
+            this.copy = this.match.getState().copy();
+        }
+
+        @Override
+        public long run() {
+            this.copy.copyFrom(this.match.getState());
+            return this.copy.getElapsedTicks();
+        }
+    }
+
+    /**
+     * Benchmarks capturing a snapshot of a match and restoring it again.
+     */
+    private static class SnapshotBenchmark extends MatchBenchmark {
+        private GameSnapshot snapshot;
+
+        public SnapshotBenchmark() { super("GameSnapshot.capture+restore"); }
+
+        @Override
+        public void setUp() {
+            super.setUp();
+            this.snapshot = new GameSnapshot(this.match.getState());
+        }
+
+        @Override
+        public long run() {
+            this.snapshot.capture(this.match.getState());
+            this.snapshot.restore(this.match.getState());
+            return this.snapshot.getData()[0];
+        }
+    }
+
+    /**
+     * Benchmarks stepping a training environment with random actions. The
+     * reset at the end of each episode makes a new match, so it is left out.
+     */
+    private static class EnvStepBenchmark extends Benchmark {
+        private final FussballEnv env = new FussballEnv();
+        private final float[] observation = new float[FussballEnv.OBSERVATION_LENGTH];
+        private final int[] actions = new int[FussballEnv.NUM_ACTIONS];
+        private int step = 0;
+
+        public EnvStepBenchmark() { super("FussballEnv.step"); }
+
+        @Override
+        public void setUp() {
+            this.env.reset(SEED, this.observation, 0);
+        }
+
+        @Override
+        public long run() {
+            if (this.env.isDone())
+                this.env.reset(SEED, this.observation, 0);
+
+            //Cycle through the actions instead of drawing random ones, so the benchmark measures only the env
+            for (int i = 0; i < this.actions.length; i++) {
+                this.actions[i] = (this.step + i) % SpindleAction.NUM_ACTIONS;
+            }
+            this.step++;
+            float reward = this.env.step(this.actions, 0, this.observation, 0);
+            return (long)reward + Float.floatToRawIntBits(this.observation[0]);
+        }
+    }
+
+    /**
+     * Benchmarks recording a high score through a Leaderboard (journaling it
+     * and, every so often, compacting it into the file in the background).
+     * Every score is better than the last, so each one makes the leaderboard.
+     * It uses a temporary high score file of its own, since the real one
+     * can't be put back while it is mapped.
+     */
+    private static class HighScoreBenchmark extends Benchmark {
+        private File file;
+        private File journal;
+        private Leaderboard leaderboard;
+        private double score = 0.0;
+
+        public HighScoreBenchmark() { super("Leaderboard.record"); }
+
+        @Override
+        public void setUp() throws IOException {
+            this.file = File.createTempFile("highScores", ".dat");
+            this.journal = new File(this.file.getPath() + Leaderboard.JOURNAL_SUFFIX);
+            HighScoreFile scores = HighScoreFile.create(this.file.getPath(), ScoreFileManager.NUMBER_OF_SCORES_TO_SAVE);
+            this.leaderboard = new Leaderboard(scores, this.journal.getPath());
+            for (int i = 0; i < ScoreFileManager.NUMBER_OF_SCORES_TO_SAVE; i++) {
+                this.leaderboard.record("Example", 500 + i);//Full, like the real file
+            }
+        }
+
+        @Override
+        public long run() {
+            this.score -= 1.0;
+            try {
+                this.leaderboard.record("Benchmark", this.score);
+            } catch (IOException e) {
+                throw new IllegalStateException("Couldn't journal the high score.", e);
+            }
+            return (long)this.score;
+        }
+
+        @Override
+        public void tearDown() throws IOException {
+            this.leaderboard.close();
+            this.journal.delete();
+            this.file.deleteOnExit();//It can't be deleted while it is still mapped on some systems
+        }
+    }
+
+    /**
+     * Benchmarks painting the whole panel into an off-screen image (no window
+     * is ever shown, so this works headless).
+     */
+    private static class PaintBenchmark extends Benchmark {
+        private AppPanel panel;
+        private BufferedImage image;
+        private Graphics2D g;
+
+        public PaintBenchmark() { super("AppPanel.paintComponent (off-screen)"); }
+
+        @Override
+        public void setUp() {
+            this.panel = new AppPanel(null);
+            this.panel.setSize(HeadlessMatch.DEFAULT_WIDTH, HeadlessMatch.DEFAULT_HEIGHT);
+            this.panel.initialize(new GameState(SEED), new GameLogic(false, true));
+            this.image = new BufferedImage(HeadlessMatch.DEFAULT_WIDTH, HeadlessMatch.DEFAULT_HEIGHT,
+                    BufferedImage.TYPE_INT_RGB);
+            this.g = this.image.createGraphics();
+        }
+
+        @Override
+        public long run() {
+            this.panel.paintComponent(this.g);
+            return this.image.getRGB(0, 0);
+        }
+
+        @Override
+        public void tearDown() {
+            this.g.dispose();
+        }
+    }
+}